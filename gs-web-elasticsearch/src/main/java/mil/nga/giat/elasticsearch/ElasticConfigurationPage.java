@@ -143,6 +143,25 @@ public abstract class ElasticConfigurationPage extends Panel {
         checkBox.setOutputMarkupId(true);
         elastic_form.add(checkBox);
 
+        // read from doc values check box
+        final Boolean useDocValues;
+        if (!attributes.isEmpty() && attributes.get(0).getUseDocValues() != null) {
+            useDocValues = attributes.get(0).getUseDocValues();
+        } else {
+            useDocValues = false;
+        }
+        AjaxCheckBox docValuesCheckBox = new AjaxCheckBox("useDocValues", Model.of(useDocValues)) {
+            @Override
+            protected void onUpdate(AjaxRequestTarget target) {
+                final boolean useDocValues = (Boolean) this.getDefaultModelObject();
+                for (final ElasticAttribute attribute : attProvider.getItems()) {
+                    attribute.setUseDocValues(useDocValues);
+                }
+            }
+        };
+        docValuesCheckBox.setOutputMarkupId(true);
+        elastic_form.add(docValuesCheckBox);
+
         elastic_form.add(new AjaxButton("es_save") {
             protected void onSubmit(AjaxRequestTarget target, Form form) {
                 onSave(target);
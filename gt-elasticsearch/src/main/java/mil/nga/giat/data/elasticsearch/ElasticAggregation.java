@@ -14,6 +14,8 @@ public class ElasticAggregation {
 
     private List<Map<String,Object>> buckets;
 
+    private Map<String,Object> bounds;
+
     public List<Map<String, Object>> getBuckets() {
         return buckets;
     }
@@ -22,6 +24,18 @@ public class ElasticAggregation {
         this.buckets = buckets;
     }
 
+    /**
+     * @return Top left and bottom right corners of a geo_bounds aggregation,
+     * or null if not a geo_bounds aggregation or no document matched
+     */
+    public Map<String, Object> getBounds() {
+        return bounds;
+    }
+
+    public void setBounds(Map<String, Object> bounds) {
+        this.bounds = bounds;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder("ElasticAggregation[numBuckets=")
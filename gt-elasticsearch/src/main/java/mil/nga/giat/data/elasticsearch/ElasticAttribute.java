@@ -47,6 +47,10 @@ public class ElasticAttribute implements Serializable {
 
     private boolean nested;
 
+    private boolean docValues;
+
+    private Boolean useDocValues;
+
     public ElasticAttribute(String name) {
         super();
         this.name = name;
@@ -55,6 +59,8 @@ public class ElasticAttribute implements Serializable {
         this.useShortName = false;
         this.stored = false;
         this.nested = false;
+        this.docValues = false;
+        this.useDocValues = false;
     }
 
     public ElasticAttribute(ElasticAttribute other) {
@@ -70,6 +76,8 @@ public class ElasticAttribute implements Serializable {
         this.analyzed = other.analyzed;
         this.stored = other.stored;
         this.nested = other.nested;
+        this.docValues = other.docValues;
+        this.useDocValues = other.useDocValues;
     }
 
     public String getName() {
@@ -164,6 +172,34 @@ public class ElasticAttribute implements Serializable {
         this.nested = nested;
     }
 
+    /**
+     * @return Whether the field can be read from doc values (keyword,
+     * numeric, date and geo_point fields with doc values enabled)
+     */
+    public boolean isDocValues() {
+        return docValues;
+    }
+
+    public void setDocValues(boolean docValues) {
+        this.docValues = docValues;
+    }
+
+    public Boolean getUseDocValues() {
+        return useDocValues;
+    }
+
+    public void setUseDocValues(Boolean useDocValues) {
+        this.useDocValues = useDocValues;
+    }
+
+    /**
+     * @return Whether the field is read with docvalue_fields instead of from
+     * the document source. Stored fields are read as stored fields.
+     */
+    public boolean isReadFromDocValues() {
+        return docValues && useDocValues != null && useDocValues && !stored && !nested;
+    }
+
     public String getDisplayName() {
         final String displayName;
         if (useShortName) {
@@ -177,7 +213,7 @@ public class ElasticAttribute implements Serializable {
     @Override
     public int hashCode() {
         return Objects.hash(name, type, use, defaultGeometry, srid, dateFormat,
-                useShortName, geometryType, analyzed, stored, nested);
+                useShortName, geometryType, analyzed, stored, nested, docValues, useDocValues);
     }
 
     @Override
@@ -198,6 +234,8 @@ public class ElasticAttribute implements Serializable {
             equal &= Objects.equals(analyzed, other.analyzed);
             equal &= Objects.equals(stored, other.stored);
             equal &= Objects.equals(nested, other.nested);
+            equal &= Objects.equals(docValues, other.docValues);
+            equal &= Objects.equals(useDocValues, other.useDocValues);
         }
         return equal;
     }
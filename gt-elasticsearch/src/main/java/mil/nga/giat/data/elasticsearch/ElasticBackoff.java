@@ -0,0 +1,57 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for requests rejected by the cluster. Delays grow
+ * exponentially from the base delay up to the maximum delay, with full
+ * jitter so that clients rejected at the same time don't retry in lockstep.
+ *
+ */
+public class ElasticBackoff {
+
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 100;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 5000;
+
+    private final int maxRetries;
+
+    private final long baseDelayMillis;
+
+    private final long maxDelayMillis;
+
+    public ElasticBackoff(int maxRetries) {
+        this(maxRetries, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public ElasticBackoff(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param attempt Number of retries already made
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxRetries;
+    }
+
+    /**
+     * @param attempt Number of retries already made
+     * @return Random delay in milliseconds before the next retry
+     */
+    public long getDelay(int attempt) {
+        final long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+}
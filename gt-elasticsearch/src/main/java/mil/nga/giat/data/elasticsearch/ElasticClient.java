@@ -9,19 +9,93 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface ElasticClient extends Closeable {
 
     public double getVersion();
 
+    public ElasticMetadataCache getMetadataCache();
+
+    public void setMetadataCache(ElasticMetadataCache metadataCache);
+
+    /**
+     * Collect searches issued within the given window and send them as a
+     * single multi-search request. Scroll requests are not batched.
+     *
+     * @param windowMillis Batch window in milliseconds, or zero to disable
+     */
+    public void setSearchBatchWindow(long windowMillis);
+
+    /**
+     * Share the response of an identical search (same indices, type and
+     * request body) that is still in flight instead of sending it again.
+     * Scroll requests are never shared.
+     */
+    public void setSearchCoalescingEnabled(boolean searchCoalescingEnabled);
+
+    /**
+     * Ask the cluster for SMILE (binary JSON) encoded responses. Responses
+     * are decoded according to their content type, so JSON responses are
+     * still accepted.
+     */
+    public void setSmileEnabled(boolean smileEnabled);
+
+    /**
+     * Ask the cluster for gzip compressed responses, which are decompressed
+     * as they are parsed.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled);
+
+    /**
+     * @param threshold Minimum size in bytes of request bodies sent gzip
+     * compressed, or zero to disable
+     */
+    public void setRequestCompressionThreshold(int threshold);
+
+    /**
+     * @param limiter Limit on concurrent requests, or null for no limit
+     */
+    public void setConcurrencyLimiter(ElasticConcurrencyLimiter limiter);
+
+    /**
+     * @param backoff Retry policy for requests rejected by the cluster
+     */
+    public void setBackoff(ElasticBackoff backoff);
+
+    /**
+     * @param hedgePolicy Policy for sending duplicate searches to another
+     * host when a search is slow, or null to disable
+     */
+    public void setHedgePolicy(ElasticHedgePolicy hedgePolicy);
+
+    /**
+     * @param metrics Metrics recording requests and response parsing, or
+     * null to disable
+     */
+    public void setMetrics(ElasticMetrics metrics);
+
     public List<String> getTypes(String indexName) throws IOException;
 
     public Map<String,Object> getMapping(String indexName, String type) throws IOException;
 
+    public CompletableFuture<Map<String,Object>> getMappingAsync(String indexName, String type);
+
     public ElasticResponse search(String searchIndices, String type, ElasticRequest request) throws IOException;
 
+    public CompletableFuture<ElasticResponse> searchAsync(String searchIndices, String type, ElasticRequest request);
+
+    public ElasticResponseStream searchStream(String searchIndices, String type, ElasticRequest request) throws IOException;
+
+    /**
+     * Count the documents matching the request query with the _count API.
+     */
+    public long count(String searchIndices, String type, ElasticRequest request) throws IOException;
+
     public ElasticResponse scroll(String scrollId, Integer scrollTime) throws IOException;
 
+    public CompletableFuture<ElasticResponse> scrollAsync(String scrollId, Integer scrollTime);
+
     @Override
     public void close() throws IOException;
 
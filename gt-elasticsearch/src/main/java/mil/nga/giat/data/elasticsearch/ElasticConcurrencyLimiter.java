@@ -0,0 +1,198 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Adaptive limit on the number of concurrent requests (AIMD). The limit grows
+ * by one for every limit successful requests and is multiplied by a backoff
+ * ratio when the cluster rejects a request (HTTP 429). Requests over the
+ * limit wait in a bounded FIFO queue and fail when no permit becomes
+ * available within the queue timeout.
+ *
+ */
+public class ElasticConcurrencyLimiter implements Closeable {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticConcurrencyLimiter.class);
+
+    public static final int DEFAULT_MAX_QUEUE_LENGTH = 1000;
+
+    private static final double BACKOFF_RATIO = 0.7;
+
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+
+    private final long queueTimeoutMillis;
+
+    private final int maxQueueLength;
+
+    private final Deque<CompletableFuture<Void>> queue;
+
+    private final ScheduledExecutorService scheduler;
+
+    private double limit;
+
+    private int inFlight;
+
+    private long rejectedCount;
+
+    private boolean closed;
+
+    /**
+     * @param maxLimit Maximum (and initial) number of concurrent requests
+     * @param queueTimeoutMillis Maximum time a request waits for a permit
+     * @param maxQueueLength Maximum number of waiting requests
+     */
+    public ElasticConcurrencyLimiter(int maxLimit, long queueTimeoutMillis, int maxQueueLength) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.maxQueueLength = maxQueueLength;
+        this.queue = new ArrayDeque<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "elasticsearch-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Acquire a permit. The returned future completes when the request may be
+     * sent, or fails with an IOException when the queue is full, the queue
+     * timeout elapses or the limiter is closed. Every successful acquire must
+     * be followed by exactly one call to {@link #release(boolean)}.
+     */
+    public CompletableFuture<Void> acquire() {
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                permit.completeExceptionally(new IOException("Concurrency limiter closed"));
+                return permit;
+            }
+            if (inFlight < (int) limit) {
+                inFlight++;
+                permit.complete(null);
+                return permit;
+            }
+            if (queue.size() >= maxQueueLength) {
+                rejectedCount++;
+                permit.completeExceptionally(new IOException("Too many queued requests (limit=" + (int) limit + ")"));
+                return permit;
+            }
+            queue.add(permit);
+        }
+        try {
+            scheduler.schedule(() -> {
+                final boolean removed;
+                synchronized (this) {
+                    removed = queue.remove(permit);
+                    if (removed) {
+                        rejectedCount++;
+                    }
+                }
+                if (removed) {
+                    permit.completeExceptionally(new IOException("Timed out waiting " + queueTimeoutMillis
+                            + "ms for a request permit"));
+                }
+            }, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed concurrently, the queued permit has already been failed
+        }
+        return permit;
+    }
+
+    /**
+     * Release a permit and adjust the limit.
+     *
+     * @param rejected Whether the request was rejected by the cluster
+     */
+    public void release(boolean rejected) {
+        final Deque<CompletableFuture<Void>> ready = new ArrayDeque<>();
+        synchronized (this) {
+            inFlight--;
+            if (rejected) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+                LOGGER.fine("Request rejected, reducing concurrency limit to " + (int) limit);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                ready.add(queue.poll());
+            }
+        }
+        ready.forEach(permit -> permit.complete(null));
+    }
+
+    /**
+     * Give up waiting for a permit, releasing it if it was already granted.
+     */
+    public void abandon(CompletableFuture<Void> permit) {
+        synchronized (this) {
+            if (queue.remove(permit)) {
+                permit.completeExceptionally(new IOException("Abandoned waiting for a request permit"));
+                return;
+            }
+        }
+        // granted or about to be granted
+        permit.thenRun(() -> release(false));
+    }
+
+    /**
+     * @return Maximum time in milliseconds a request waits for a permit
+     */
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * @return Number of requests that failed to obtain a permit
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Fail the waiting requests and any further acquire. Requests holding a
+     * permit complete normally.
+     */
+    @Override
+    public void close() {
+        final Deque<CompletableFuture<Void>> waiting;
+        synchronized (this) {
+            closed = true;
+            waiting = new ArrayDeque<>(queue);
+            queue.clear();
+        }
+        scheduler.shutdownNow();
+        waiting.forEach(permit -> permit.completeExceptionally(new IOException("Concurrency limiter closed")));
+    }
+
+}
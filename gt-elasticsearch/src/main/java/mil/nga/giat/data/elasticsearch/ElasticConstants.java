@@ -42,4 +42,10 @@ public final class ElasticConstants {
      */
     public static final String NESTED = "nested";
 
+    /**
+     * Key used in the feature type user data to indicate whether the field is
+     * read from doc values.
+     */
+    public static final String DOC_VALUES = "doc_values";
+
 }
@@ -0,0 +1,100 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Short lived cache shared by the count and read requests of a query. A page
+ * searched to count features is kept for the reader of the same page, and the
+ * total number of hits of any search is kept for counting other pages of the
+ * same query. This allows a paged request that needs both the page and the
+ * number of matched features (e.g. WFS 2.0 GetFeature) to be answered with a
+ * single search.
+ *
+ */
+public class ElasticCountCache {
+
+    public static final long DEFAULT_TTL_SECONDS = 30;
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final Cache<String,Long> totals;
+
+    private final Cache<String,ElasticResponse> pages;
+
+    public ElasticCountCache() {
+        this(DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public ElasticCountCache(long ttl, TimeUnit unit) {
+        this.totals = CacheBuilder.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(ttl, unit)
+                .build();
+        this.pages = CacheBuilder.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(ttl, unit)
+                .build();
+    }
+
+    /**
+     * @return Total number of hits of the request query, or null if unknown
+     */
+    public Long getTotal(String searchIndices, String type, ElasticRequest request) throws IOException {
+        return totals.getIfPresent(getTotalKey(searchIndices, type, request));
+    }
+
+    /**
+     * Record the total number of hits of a search. Responses of searches
+     * that didn't count all hits must not be added.
+     */
+    public void putTotal(String searchIndices, String type, ElasticRequest request, long total) throws IOException {
+        totals.put(getTotalKey(searchIndices, type, request), total);
+    }
+
+    /**
+     * Keep a page for the next reader of the same request and record its
+     * total number of hits.
+     */
+    public void putPage(String searchIndices, String type, ElasticRequest request, ElasticResponse response)
+            throws IOException {
+        pages.put(ElasticResultCache.getKey(searchIndices, type, request), response);
+        putTotal(searchIndices, type, request, response.getTotalNumHits());
+    }
+
+    /**
+     * @return Page previously added for the request, or null. The page is
+     * removed so that it is read at most once.
+     */
+    public ElasticResponse takePage(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final String key = ElasticResultCache.getKey(searchIndices, type, request);
+        final ElasticResponse response = pages.getIfPresent(key);
+        if (response != null) {
+            pages.invalidate(key);
+        }
+        return response;
+    }
+
+    public void invalidateAll() {
+        totals.invalidateAll();
+        pages.invalidateAll();
+    }
+
+    /**
+     * @return Key of the total number of hits, which only depends on the
+     * query and not on the page
+     */
+    private static String getTotalKey(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final ElasticRequest countRequest = new ElasticRequest();
+        countRequest.setQuery(request.getQuery());
+        return ElasticResultCache.getKey(searchIndices, type, countRequest);
+    }
+
+}
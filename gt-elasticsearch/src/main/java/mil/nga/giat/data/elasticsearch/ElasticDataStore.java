@@ -11,9 +11,18 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.logging.Logger;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import java.util.stream.Collectors;
 
 import org.apache.http.HttpHost;
@@ -42,6 +51,10 @@ public class ElasticDataStore extends ContentDataStore {
 
     private final static Logger LOGGER = Logging.getLogger(ElasticDataStore.class);
 
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final int instanceId = INSTANCES.incrementAndGet();
+
     private ElasticClient client;
 
     private final String indexName;
@@ -62,12 +75,82 @@ public class ElasticDataStore extends ContentDataStore {
 
     private Integer scrollTime;
 
+    private boolean scrollPrefetchEnabled;
+
+    private Integer scrollSlices;
+
     private ArrayEncoding arrayEncoding;
 
     private Long gridSize;
 
     private Double gridThreshold;
 
+    private boolean streamingEnabled;
+
+    private boolean responseFilteringEnabled;
+
+    private boolean searchAfterEnabled;
+
+    private Integer maxResultWindow;
+
+    private ElasticCountCache countCache;
+
+    private final ElasticPagination pagination;
+
+    private Integer metadataCacheTtl;
+
+    private Integer searchBatchWindow;
+
+    private boolean searchCoalescingEnabled;
+
+    private boolean smileEnabled;
+
+    private boolean compressionEnabled;
+
+    private Integer requestCompressionThreshold;
+
+    private Long resultCacheSize;
+
+    private Integer resultCacheTtl;
+
+    private Set<String> resultCacheLayers;
+
+    private ElasticResultCache resultCache;
+
+    private Integer maxConcurrentRequests;
+
+    private Integer requestQueueTimeout;
+
+    private Integer maxRetries;
+
+    private Double hedgePercentile;
+
+    private Integer hedgeMinDelay;
+
+    private volatile ElasticMetrics metrics;
+
+    private Integer slowQueryThreshold;
+
+    private boolean lazyDecodingEnabled;
+
+    private boolean floatCoordinatesEnabled;
+
+    private Long geometryCacheSize;
+
+    private volatile ElasticGeometryCache geometryCache;
+
+    private volatile Integer decodeParallelism;
+
+    private volatile ForkJoinPool decodePool;
+
+    private final ConcurrentMap<String,ElasticMetrics> layerMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the lazily created geometry cache, decoding pool and metrics,
+     * which are read without locking for every query
+     */
+    private final Object lazyInitLock = new Object();
+
     public enum ArrayEncoding {
 
         /**
@@ -113,6 +196,8 @@ public class ElasticDataStore extends ContentDataStore {
         docTypes = new HashMap<>();
 
         arrayEncoding = ArrayEncoding.JSON;
+
+        pagination = new ElasticPagination();
     }
 
     @Override
@@ -209,6 +294,8 @@ public class ElasticDataStore extends ContentDataStore {
 
     @Override
     public void dispose() {
+        setMetricsEnabled(false);
+        setDecodeParallelism(null);
         try {
             client.close();
         } catch (IOException e) {
@@ -265,6 +352,22 @@ public class ElasticDataStore extends ContentDataStore {
         this.scrollTime = scrollTime;
     }
 
+    public boolean isScrollPrefetchEnabled() {
+        return scrollPrefetchEnabled;
+    }
+
+    public void setScrollPrefetchEnabled(boolean scrollPrefetchEnabled) {
+        this.scrollPrefetchEnabled = scrollPrefetchEnabled;
+    }
+
+    public Integer getScrollSlices() {
+        return scrollSlices;
+    }
+
+    public void setScrollSlices(Integer scrollSlices) {
+        this.scrollSlices = scrollSlices;
+    }
+
     public ArrayEncoding getArrayEncoding() {
         return arrayEncoding;
     }
@@ -289,6 +392,445 @@ public class ElasticDataStore extends ContentDataStore {
         this.gridThreshold = gridThreshold;
     }
 
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    public boolean isResponseFilteringEnabled() {
+        return responseFilteringEnabled;
+    }
+
+    public void setResponseFilteringEnabled(boolean responseFilteringEnabled) {
+        this.responseFilteringEnabled = responseFilteringEnabled;
+    }
+
+    public boolean isSearchAfterEnabled() {
+        return searchAfterEnabled;
+    }
+
+    public void setSearchAfterEnabled(boolean searchAfterEnabled) {
+        this.searchAfterEnabled = searchAfterEnabled;
+    }
+
+    public Integer getMaxResultWindow() {
+        return maxResultWindow;
+    }
+
+    public void setMaxResultWindow(Integer maxResultWindow) {
+        this.maxResultWindow = maxResultWindow;
+    }
+
+    public String getPaginationTiebreaker() {
+        return pagination.getTiebreaker();
+    }
+
+    /**
+     * @param paginationTiebreaker Unique field ending the sort of paged
+     * queries, or null for the document id
+     */
+    public void setPaginationTiebreaker(String paginationTiebreaker) {
+        pagination.setTiebreaker(paginationTiebreaker);
+    }
+
+    public synchronized boolean isCombinedCountEnabled() {
+        return countCache != null;
+    }
+
+    public synchronized void setCombinedCountEnabled(boolean combinedCountEnabled) {
+        if (!combinedCountEnabled) {
+            countCache = null;
+        } else if (countCache == null) {
+            countCache = new ElasticCountCache();
+        }
+    }
+
+    /**
+     * @return Cache shared by count and read requests, or null when disabled
+     */
+    public synchronized ElasticCountCache getCountCache() {
+        return countCache;
+    }
+
+    public Integer getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    public void setMetadataCacheTtl(Integer metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+        if (metadataCacheTtl != null) {
+            client.setMetadataCache(new ElasticMetadataCache(metadataCacheTtl, TimeUnit.SECONDS));
+        }
+    }
+
+    public Integer getSearchBatchWindow() {
+        return searchBatchWindow;
+    }
+
+    public void setSearchBatchWindow(Integer searchBatchWindow) {
+        this.searchBatchWindow = searchBatchWindow;
+        client.setSearchBatchWindow(searchBatchWindow != null ? searchBatchWindow : 0);
+    }
+
+    public boolean isSearchCoalescingEnabled() {
+        return searchCoalescingEnabled;
+    }
+
+    public void setSearchCoalescingEnabled(boolean searchCoalescingEnabled) {
+        this.searchCoalescingEnabled = searchCoalescingEnabled;
+        client.setSearchCoalescingEnabled(searchCoalescingEnabled);
+    }
+
+    public boolean isSmileEnabled() {
+        return smileEnabled;
+    }
+
+    public void setSmileEnabled(boolean smileEnabled) {
+        this.smileEnabled = smileEnabled;
+        client.setSmileEnabled(smileEnabled);
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        client.setCompressionEnabled(compressionEnabled);
+    }
+
+    public Integer getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(Integer requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        client.setRequestCompressionThreshold(requestCompressionThreshold != null ? requestCompressionThreshold : 0);
+    }
+
+    public Long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public synchronized void setResultCacheSize(Long resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+        this.resultCache = null;
+    }
+
+    public Integer getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    public synchronized void setResultCacheTtl(Integer resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+        this.resultCache = null;
+    }
+
+    public Set<String> getResultCacheLayers() {
+        return resultCacheLayers;
+    }
+
+    /**
+     * @param resultCacheLayers Names of the layers using the result cache, or
+     * empty for all layers
+     */
+    public void setResultCacheLayers(Set<String> resultCacheLayers) {
+        this.resultCacheLayers = resultCacheLayers;
+    }
+
+    /**
+     * @return Query result cache, or null when disabled
+     */
+    public synchronized ElasticResultCache getResultCache() {
+        if (resultCache == null && resultCacheSize != null && resultCacheSize > 0) {
+            final long ttl;
+            if (resultCacheTtl != null) {
+                ttl = resultCacheTtl;
+            } else {
+                ttl = (Integer) ElasticDataStoreFactory.RESULT_CACHE_TTL.getDefaultValue();
+            }
+            resultCache = new ElasticResultCache(resultCacheSize, ttl, TimeUnit.SECONDS);
+        }
+        return resultCache;
+    }
+
+    public boolean isResultCacheEnabled(String layerName) {
+        return getResultCache() != null
+                && (resultCacheLayers == null || resultCacheLayers.isEmpty() || resultCacheLayers.contains(layerName));
+    }
+
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        updateConcurrencyLimiter();
+    }
+
+    public Integer getRequestQueueTimeout() {
+        return requestQueueTimeout;
+    }
+
+    public void setRequestQueueTimeout(Integer requestQueueTimeout) {
+        this.requestQueueTimeout = requestQueueTimeout;
+        updateConcurrencyLimiter();
+    }
+
+    private void updateConcurrencyLimiter() {
+        final ElasticConcurrencyLimiter limiter;
+        if (maxConcurrentRequests != null && maxConcurrentRequests > 0) {
+            final long queueTimeout;
+            if (requestQueueTimeout != null) {
+                queueTimeout = requestQueueTimeout;
+            } else {
+                queueTimeout = (Integer) ElasticDataStoreFactory.REQUEST_QUEUE_TIMEOUT.getDefaultValue();
+            }
+            limiter = new ElasticConcurrencyLimiter(maxConcurrentRequests, queueTimeout,
+                    ElasticConcurrencyLimiter.DEFAULT_MAX_QUEUE_LENGTH);
+        } else {
+            limiter = null;
+        }
+        client.setConcurrencyLimiter(limiter);
+    }
+
+    public Integer getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+        client.setBackoff(new ElasticBackoff(maxRetries != null ? maxRetries : 0));
+    }
+
+    public Double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(Double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+        updateHedgePolicy();
+    }
+
+    public Integer getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public void setHedgeMinDelay(Integer hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+        updateHedgePolicy();
+    }
+
+    private void updateHedgePolicy() {
+        final ElasticHedgePolicy hedgePolicy;
+        if (hedgePercentile != null && hedgePercentile > 0) {
+            final long minDelay;
+            if (hedgeMinDelay != null) {
+                minDelay = hedgeMinDelay;
+            } else {
+                minDelay = (Integer) ElasticDataStoreFactory.HEDGE_MIN_DELAY.getDefaultValue();
+            }
+            hedgePolicy = new ElasticHedgePolicy(hedgePercentile, minDelay);
+        } else {
+            hedgePolicy = null;
+        }
+        client.setHedgePolicy(hedgePolicy);
+    }
+
+    public Integer getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * @param slowQueryThreshold Minimum duration in milliseconds of queries
+     * logged with their phase timings and request body, or 0 to disable
+     */
+    public void setSlowQueryThreshold(Integer slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    public boolean isLazyDecodingEnabled() {
+        return lazyDecodingEnabled;
+    }
+
+    /**
+     * @param lazyDecodingEnabled Whether feature attributes are decoded from
+     * the search hit when first read instead of when the feature is created
+     */
+    public void setLazyDecodingEnabled(boolean lazyDecodingEnabled) {
+        this.lazyDecodingEnabled = lazyDecodingEnabled;
+    }
+
+    public boolean isFloatCoordinatesEnabled() {
+        return floatCoordinatesEnabled;
+    }
+
+    /**
+     * @param floatCoordinatesEnabled Whether coordinates of decoded
+     * geometries are stored in single precision
+     */
+    public void setFloatCoordinatesEnabled(boolean floatCoordinatesEnabled) {
+        this.floatCoordinatesEnabled = floatCoordinatesEnabled;
+        if (geometryCache != null) {
+            geometryCache.invalidateAll();
+        }
+    }
+
+    public Long getGeometryCacheSize() {
+        return geometryCacheSize;
+    }
+
+    public void setGeometryCacheSize(Long geometryCacheSize) {
+        synchronized (lazyInitLock) {
+            this.geometryCacheSize = geometryCacheSize;
+            this.geometryCache = null;
+        }
+    }
+
+    /**
+     * @return Cache of decoded geo_shape geometries shared by all readers, or
+     * null if disabled
+     */
+    public ElasticGeometryCache getGeometryCache() {
+        ElasticGeometryCache cache = geometryCache;
+        if (cache == null) {
+            synchronized (lazyInitLock) {
+                cache = geometryCache;
+                if (cache == null && geometryCacheSize != null && geometryCacheSize > 0) {
+                    cache = geometryCache = new ElasticGeometryCache(geometryCacheSize);
+                }
+            }
+        }
+        return cache;
+    }
+
+    public Integer getDecodeParallelism() {
+        return decodeParallelism;
+    }
+
+    /**
+     * Change the number of decoding threads. The previous pool is shut down
+     * once the pages submitted by its readers have been decoded, readers
+     * failing to submit to it decode on their own thread.
+     *
+     * @param decodeParallelism Number of threads decoding the hits of a
+     * search page in parallel, or 0 to decode on the reading thread
+     */
+    public void setDecodeParallelism(Integer decodeParallelism) {
+        final ForkJoinPool previous;
+        synchronized (lazyInitLock) {
+            this.decodeParallelism = decodeParallelism;
+            previous = decodePool;
+            decodePool = null;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * @return Pool decoding the hits of search pages shared by all readers,
+     * or null if hits are decoded on the reading thread
+     */
+    public ForkJoinPool getDecodePool() {
+        ForkJoinPool pool = decodePool;
+        if (pool == null && decodeParallelism != null && decodeParallelism > 0) {
+            synchronized (lazyInitLock) {
+                pool = decodePool;
+                if (pool == null && decodeParallelism != null && decodeParallelism > 0) {
+                    pool = decodePool = new ForkJoinPool(decodeParallelism, forkJoinPool -> {
+                        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                        thread.setName("elasticsearch-decode-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+        return pool;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metrics != null;
+    }
+
+    /**
+     * Enable or disable metrics. Metrics of the datastore and of each layer
+     * read are registered as platform MBeans in the
+     * {@value ElasticMetrics#DOMAIN} domain.
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        synchronized (lazyInitLock) {
+            if (metricsEnabled && metrics == null) {
+                final ElasticMetrics dataStoreMetrics = new ElasticMetrics();
+                dataStoreMetrics.register(getObjectName("DataStore", indexName));
+                client.setMetrics(dataStoreMetrics);
+                metrics = dataStoreMetrics;
+            } else if (!metricsEnabled && metrics != null) {
+                client.setMetrics(null);
+                metrics.unregister();
+                metrics = null;
+                layerMetrics.values().forEach(ElasticMetrics::unregister);
+                layerMetrics.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Datastore metrics or null if metrics are disabled
+     */
+    public ElasticMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Metrics of the layer or null if metrics are disabled
+     */
+    public ElasticMetrics getLayerMetrics(String layerName) {
+        if (metrics == null) {
+            return null;
+        }
+        final ElasticMetrics layer = layerMetrics.get(layerName);
+        if (layer != null) {
+            return layer;
+        }
+        synchronized (lazyInitLock) {
+            // registration must not race with disabling metrics
+            if (metrics == null) {
+                return null;
+            }
+            return layerMetrics.computeIfAbsent(layerName, name -> {
+                final ElasticMetrics created = new ElasticMetrics();
+                created.register(getObjectName("Layer", name));
+                return created;
+            });
+        }
+    }
+
+    private ObjectName getObjectName(String type, String name) {
+        try {
+            return new ObjectName(ElasticMetrics.DOMAIN + ":type=" + type + ",dataStore=" + instanceId
+                    + ",name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Discard cached mappings and alias resolution for the store index so
+     * that mapping changes are picked up by the next request.
+     */
+    public void invalidateMetadata() {
+        client.getMetadataCache().invalidate(indexName);
+    }
+
+    public ElasticPagination getPagination() {
+        return pagination;
+    }
+
     public Map<String, ElasticLayerConfiguration> getLayerConfigurations() {
         return layerConfigurations;
     }
@@ -416,11 +958,30 @@ public class ElasticDataStore extends ContentDataStore {
                 elasticAttribute.setStored(stored);
                 elasticAttribute.setType(binding);
                 elasticAttribute.setNested(nested);
+                elasticAttribute.setDocValues(hasDocValues(propertyType, map));
                 elasticAttributes.add(elasticAttribute);
             }
         }
     }
 
+    static boolean hasDocValues(String propertyType, Map<String, Object> map) {
+        final boolean docValues;
+        switch (propertyType) {
+        case "keyword":
+        case "integer":
+        case "long":
+        case "float":
+        case "double":
+        case "date":
+        case "geo_point":
+            docValues = !Boolean.FALSE.equals(map.get("doc_values"));
+            break;
+        default:
+            docValues = false;
+        }
+        return docValues;
+    }
+
     static boolean isAnalyzed(Map<String, Object> map) {
         boolean analyzed = false;
         Object value = map.get("type");
@@ -21,9 +21,11 @@ import java.io.UncheckedIOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Data store factory that creates {@linkplain ElasticDataStore} instances.
@@ -58,6 +60,12 @@ public class ElasticDataStoreFactory implements DataStoreFactorySpi {
 
     public static final Param SCROLL_TIME_SECONDS = new Param("scroll_time", Integer.class, "Time to keep the scroll open in seconds (ignored if scroll_enabled=false)", false, 120);
 
+    public static final Param SCROLL_PREFETCH_ENABLED = new Param("scroll_prefetch_enabled", Boolean.class,
+            "Fetch the next scroll page in the background while the current page is read (ignored if scroll_enabled=false)", false, false);
+
+    public static final Param SCROLL_SLICES = new Param("scroll_slices", Integer.class,
+            "Number of slices scrolled concurrently. Feature order is undefined when greater than 1 (ignored if scroll_enabled=false)", false, 1);
+
     public static final Param ARRAY_ENCODING = new Param("array_encoding", String.class, "Array encoding strategy. Allowed values are \"JSON\" (keep arrays) " 
             + " and \"CSV\" (URL encode and join array elements).", false, "JSON");
 
@@ -66,6 +74,84 @@ public class ElasticDataStoreFactory implements DataStoreFactorySpi {
     public static final Param GRID_THRESHOLD = new Param("grid_threshold",  Double.class, 
             "Geohash grid aggregation precision will be the minimum necessary to satisfy actual_grid_size/grid_size>grid_threshold", false, 0.05);
 
+    public static final Param STREAMING_ENABLED = new Param("streaming_enabled", Boolean.class,
+            "Read search hits incrementally from the response instead of parsing the full response up front (ignored for scroll and aggregation queries)", false, false);
+
+    public static final Param RESPONSE_FILTERING_ENABLED = new Param("response_filtering_enabled", Boolean.class,
+            "Trim search responses to the fields read by the layer using filter_path", false, false);
+
+    public static final Param SEARCH_AFTER_ENABLED = new Param("search_after_enabled", Boolean.class,
+            "Continue paged queries from the previous page using search_after and page past max_result_window", false, false);
+
+    public static final Param MAX_RESULT_WINDOW = new Param("max_result_window", Integer.class,
+            "Maximum from+size supported by the index (index.max_result_window)", false, 10000);
+
+    public static final Param PAGINATION_TIEBREAKER = new Param("pagination_tiebreaker", String.class,
+            "Unique field with doc values ending the sort of paged queries (default _id, or _uid before 6.0)", false);
+
+    public static final Param COMBINED_COUNT_ENABLED = new Param("combined_count_enabled", Boolean.class,
+            "Answer the count and the page of a paged query with a single search", false, false);
+
+    public static final Param METADATA_CACHE_TTL = new Param("metadata_cache_ttl", Integer.class,
+            "Time in seconds to cache index mappings and aliases (0 to disable)", false, 300);
+
+    public static final Param SEARCH_BATCH_WINDOW = new Param("search_batch_window", Integer.class,
+            "Time in milliseconds to collect concurrent searches into a single multi-search request (0 to disable)", false, 0);
+
+    public static final Param SEARCH_COALESCING_ENABLED = new Param("search_coalescing_enabled", Boolean.class,
+            "Share the response of identical searches that are in flight at the same time", false, false);
+
+    public static final Param SMILE_ENABLED = new Param("smile_enabled", Boolean.class,
+            "Request SMILE (binary JSON) encoded responses to reduce parsing cost", false, false);
+
+    public static final Param COMPRESSION_ENABLED = new Param("compression_enabled", Boolean.class,
+            "Request gzip compressed responses", false, false);
+
+    public static final Param REQUEST_COMPRESSION_THRESHOLD = new Param("request_compression_threshold", Integer.class,
+            "Minimum size in bytes of request bodies sent gzip compressed (0 to disable)", false, 0);
+
+    public static final Param RESULT_CACHE_SIZE = new Param("result_cache_size", Long.class,
+            "Maximum size in bytes of cached query results (0 to disable)", false, 0l);
+
+    public static final Param RESULT_CACHE_TTL = new Param("result_cache_ttl", Integer.class,
+            "Time in seconds to cache query results", false, 60);
+
+    public static final Param RESULT_CACHE_LAYERS = new Param("result_cache_layers", String.class,
+            "Comma separated names of the layers using the query result cache (empty for all layers)", false);
+
+    public static final Param MAX_CONCURRENT_REQUESTS = new Param("max_concurrent_requests", Integer.class,
+            "Maximum number of concurrent requests, reduced automatically when the cluster rejects requests (0 for no limit)", false, 0);
+
+    public static final Param REQUEST_QUEUE_TIMEOUT = new Param("request_queue_timeout", Integer.class,
+            "Time in milliseconds a request waits for a free slot when max_concurrent_requests is reached", false, 30000);
+
+    public static final Param MAX_RETRIES = new Param("max_retries", Integer.class,
+            "Number of times a request rejected by the cluster (HTTP 429) is retried with exponential backoff", false, 3);
+
+    public static final Param HEDGE_PERCENTILE = new Param("hedge_percentile", Double.class,
+            "Send a duplicate search to another host when no response is received within this percentile of recent search latencies (0 to disable)", false, 0.0);
+
+    public static final Param HEDGE_MIN_DELAY = new Param("hedge_min_delay", Integer.class,
+            "Minimum time in milliseconds before a duplicate search is sent", false, 20);
+
+    public static final Param METRICS_ENABLED = new Param("metrics_enabled", Boolean.class,
+            "Record request, parsing and decoding metrics and expose them as JMX MBeans", false, false);
+
+    public static final Param SLOW_QUERY_THRESHOLD = new Param("slow_query_threshold", Integer.class,
+            "Log queries taking at least this many milliseconds with their phase timings and request body (0 to disable)", false, 0);
+
+    public static final Param LAZY_DECODING_ENABLED = new Param("lazy_decoding_enabled", Boolean.class,
+            "Decode feature attributes when first read instead of when the feature is read", false, false);
+
+    public static final Param FLOAT_COORDINATES_ENABLED = new Param("float_coordinates_enabled", Boolean.class,
+            "Store coordinates of decoded geometries in single precision", false, false);
+
+    public static final Param GEOMETRY_CACHE_SIZE = new Param("geometry_cache_size", Long.class,
+            "Maximum size in bytes of cached geo_shape geometries (0 to disable)", false, 0l);
+
+    public static final Param DECODE_PARALLELISM = new Param("decode_parallelism", Integer.class,
+            "Number of threads decoding the features of a search page in parallel (0 to disable)", false, 0);
+
     protected static final Param[] PARAMS = {
             HOSTNAME,
             HOSTPORT,
@@ -77,9 +163,37 @@ public class ElasticDataStoreFactory implements DataStoreFactorySpi {
             SCROLL_ENABLED,
             SCROLL_SIZE,
             SCROLL_TIME_SECONDS,
+            SCROLL_PREFETCH_ENABLED,
+            SCROLL_SLICES,
             ARRAY_ENCODING,
             GRID_SIZE,
-            GRID_THRESHOLD
+            GRID_THRESHOLD,
+            STREAMING_ENABLED,
+            RESPONSE_FILTERING_ENABLED,
+            SEARCH_AFTER_ENABLED,
+            MAX_RESULT_WINDOW,
+            PAGINATION_TIEBREAKER,
+            COMBINED_COUNT_ENABLED,
+            METADATA_CACHE_TTL,
+            SEARCH_BATCH_WINDOW,
+            SEARCH_COALESCING_ENABLED,
+            SMILE_ENABLED,
+            COMPRESSION_ENABLED,
+            REQUEST_COMPRESSION_THRESHOLD,
+            RESULT_CACHE_SIZE,
+            RESULT_CACHE_TTL,
+            RESULT_CACHE_LAYERS,
+            MAX_CONCURRENT_REQUESTS,
+            REQUEST_QUEUE_TIMEOUT,
+            MAX_RETRIES,
+            HEDGE_PERCENTILE,
+            HEDGE_MIN_DELAY,
+            METRICS_ENABLED,
+            SLOW_QUERY_THRESHOLD,
+            LAZY_DECODING_ENABLED,
+            FLOAT_COORDINATES_ENABLED,
+            GEOMETRY_CACHE_SIZE,
+            DECODE_PARALLELISM
     };
 
     protected static final String DISPLAY_NAME = "Elasticsearch";
@@ -139,9 +253,41 @@ public class ElasticDataStoreFactory implements DataStoreFactorySpi {
         dataStore.setScrollEnabled((Boolean)getValue(SCROLL_ENABLED, params));
         dataStore.setScrollSize(((Number)getValue(SCROLL_SIZE, params)).longValue());
         dataStore.setScrollTime((Integer)getValue(SCROLL_TIME_SECONDS, params));
+        dataStore.setScrollPrefetchEnabled((Boolean) getValue(SCROLL_PREFETCH_ENABLED, params));
+        dataStore.setScrollSlices((Integer) getValue(SCROLL_SLICES, params));
         dataStore.setArrayEncoding(ArrayEncoding.valueOf(arrayEncoding.toUpperCase()));
         dataStore.setGridSize((Long) GRID_SIZE.lookUp(params));
         dataStore.setGridThreshold((Double) GRID_THRESHOLD.lookUp(params));
+        dataStore.setStreamingEnabled((Boolean) getValue(STREAMING_ENABLED, params));
+        dataStore.setResponseFilteringEnabled((Boolean) getValue(RESPONSE_FILTERING_ENABLED, params));
+        dataStore.setSearchAfterEnabled((Boolean) getValue(SEARCH_AFTER_ENABLED, params));
+        dataStore.setMaxResultWindow((Integer) getValue(MAX_RESULT_WINDOW, params));
+        dataStore.setPaginationTiebreaker((String) getValue(PAGINATION_TIEBREAKER, params));
+        dataStore.setCombinedCountEnabled((Boolean) getValue(COMBINED_COUNT_ENABLED, params));
+        dataStore.setMetadataCacheTtl((Integer) getValue(METADATA_CACHE_TTL, params));
+        dataStore.setSearchBatchWindow((Integer) getValue(SEARCH_BATCH_WINDOW, params));
+        dataStore.setSearchCoalescingEnabled((Boolean) getValue(SEARCH_COALESCING_ENABLED, params));
+        dataStore.setSmileEnabled((Boolean) getValue(SMILE_ENABLED, params));
+        dataStore.setCompressionEnabled((Boolean) getValue(COMPRESSION_ENABLED, params));
+        dataStore.setRequestCompressionThreshold((Integer) getValue(REQUEST_COMPRESSION_THRESHOLD, params));
+        dataStore.setResultCacheSize(((Number) getValue(RESULT_CACHE_SIZE, params)).longValue());
+        dataStore.setResultCacheTtl((Integer) getValue(RESULT_CACHE_TTL, params));
+        dataStore.setRequestQueueTimeout((Integer) getValue(REQUEST_QUEUE_TIMEOUT, params));
+        dataStore.setMaxConcurrentRequests((Integer) getValue(MAX_CONCURRENT_REQUESTS, params));
+        dataStore.setMaxRetries((Integer) getValue(MAX_RETRIES, params));
+        dataStore.setHedgeMinDelay((Integer) getValue(HEDGE_MIN_DELAY, params));
+        dataStore.setHedgePercentile((Double) getValue(HEDGE_PERCENTILE, params));
+        dataStore.setMetricsEnabled((Boolean) getValue(METRICS_ENABLED, params));
+        dataStore.setSlowQueryThreshold((Integer) getValue(SLOW_QUERY_THRESHOLD, params));
+        dataStore.setLazyDecodingEnabled((Boolean) getValue(LAZY_DECODING_ENABLED, params));
+        dataStore.setFloatCoordinatesEnabled((Boolean) getValue(FLOAT_COORDINATES_ENABLED, params));
+        dataStore.setGeometryCacheSize((Long) getValue(GEOMETRY_CACHE_SIZE, params));
+        dataStore.setDecodeParallelism((Integer) getValue(DECODE_PARALLELISM, params));
+        final String resultCacheLayers = (String) getValue(RESULT_CACHE_LAYERS, params);
+        if (resultCacheLayers != null) {
+            dataStore.setResultCacheLayers(Arrays.stream(resultCacheLayers.split(","))
+                    .map(String::trim).filter(name -> !name.isEmpty()).collect(Collectors.toSet()));
+        }
         return dataStore;
     }
 
@@ -0,0 +1,331 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static mil.nga.giat.data.elasticsearch.ElasticConstants.DATE_FORMAT;
+import static mil.nga.giat.data.elasticsearch.ElasticConstants.DOC_VALUES;
+import static mil.nga.giat.data.elasticsearch.ElasticConstants.FULL_NAME;
+import static mil.nga.giat.data.elasticsearch.ElasticConstants.GEOMETRY_TYPE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import mil.nga.giat.data.elasticsearch.ElasticAttribute.ElasticGeometryType;
+import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
+import mil.nga.giat.shaded.es.common.joda.Joda;
+import mil.nga.giat.shaded.joda.time.format.DateTimeFormatter;
+
+/**
+ * Immutable plan decoding hits into features of a feature type. Attribute
+ * names, field paths, bindings and date parsers are resolved once per feature
+ * type instead of once per hit.
+ *
+ */
+public class ElasticDecodePlan {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticDecodePlan.class);
+
+    private static final Cache<SimpleFeatureType,ElasticDecodePlan> PLANS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private enum Kind {
+        ID, INDEX, TYPE, SCORE, RELATIVE_SCORE, AGGREGATION, GEOMETRY, DATE, VALUE
+    }
+
+    private final AttributeDecoder[] decoders;
+
+    private final int geoPointIndex;
+
+    ElasticDecodePlan(SimpleFeatureType featureType) {
+        final List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        this.decoders = new AttributeDecoder[descriptors.size()];
+        int numGeometries = 0;
+        for (int i = 0; i < decoders.length; i++) {
+            decoders[i] = new AttributeDecoder(i, descriptors.get(i));
+            if (decoders[i].kind == Kind.GEOMETRY) {
+                numGeometries++;
+            }
+        }
+        final GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
+        if (numGeometries == 1 && geometryDescriptor != null
+                && geometryDescriptor.getUserData().get(GEOMETRY_TYPE) == ElasticGeometryType.GEO_POINT) {
+            this.geoPointIndex = featureType.indexOf(geometryDescriptor.getName());
+        } else {
+            this.geoPointIndex = -1;
+        }
+    }
+
+    /**
+     * @return Plan for the feature type, shared by all readers of the same
+     * feature type instance
+     */
+    public static ElasticDecodePlan get(SimpleFeatureType featureType) {
+        try {
+            return PLANS.get(featureType, () -> new ElasticDecodePlan(featureType));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Set the attributes of a hit in the feature builder.
+     */
+    public void decode(ElasticHit hit, Float score, Float relativeScore, SimpleFeatureBuilder builder,
+            ElasticParserUtil parserUtil, ArrayEncoding arrayEncoding) {
+        for (int i = 0; i < decoders.length; i++) {
+            final Object value = decode(i, hit, score, relativeScore, parserUtil, arrayEncoding);
+            if (value != null) {
+                builder.set(i, value);
+            }
+        }
+    }
+
+    /**
+     * Decode a single attribute of a hit.
+     *
+     * @param index Attribute index
+     * @return Attribute value or null if missing
+     */
+    public Object decode(int index, ElasticHit hit, Float score, Float relativeScore, ElasticParserUtil parserUtil,
+            ArrayEncoding arrayEncoding) {
+        final AttributeDecoder decoder = decoders[index];
+        final List<Object> fieldValues = hit.field(decoder.sourceName);
+        List<Object> values = readValues(decoder, hit, fieldValues, parserUtil);
+        if (values != null && fieldValues != null && decoder.floatDocValues) {
+            values = toFloats(values);
+        }
+
+        final Object value;
+        if (values == null) {
+            switch (decoder.kind) {
+                case ID:
+                    value = hit.getId();
+                    break;
+                case INDEX:
+                    value = hit.getIndex();
+                    break;
+                case TYPE:
+                    value = hit.getType();
+                    break;
+                case SCORE:
+                    value = score;
+                    break;
+                case RELATIVE_SCORE:
+                    value = relativeScore;
+                    break;
+                default:
+                    // skip missing attribute
+                    value = null;
+            }
+        } else if (decoder.kind == Kind.GEOMETRY) {
+            if (values.size() == 1) {
+                value = parserUtil.createGeometry(values.get(0));
+            } else {
+                value = parserUtil.createGeometry(values);
+            }
+        } else if (decoder.kind == Kind.DATE) {
+            value = decoder.parseDate(values.get(0), fieldValues != null);
+        } else if (values.size() == 1) {
+            value = values.get(0);
+        } else if (decoder.kind != Kind.AGGREGATION) {
+            switch (arrayEncoding) {
+                case CSV:
+                    // only include first array element when using CSV array encoding
+                    value = values.get(0);
+                    break;
+                default:
+                    value = values;
+            }
+        } else {
+            value = null;
+        }
+        return value;
+    }
+
+    /**
+     * @return Field values of an attribute of a hit or null if missing
+     */
+    public List<Object> readValues(int index, ElasticHit hit, ElasticParserUtil parserUtil) {
+        final AttributeDecoder decoder = decoders[index];
+        return readValues(decoder, hit, hit.field(decoder.sourceName), parserUtil);
+    }
+
+    private static List<Object> readValues(AttributeDecoder decoder, ElasticHit hit, List<Object> fieldValues,
+            ElasticParserUtil parserUtil) {
+        final Map<String, Object> source = hit.getSource();
+        List<Object> values = fieldValues;
+        if (values == null && source != null) {
+            // read field from source
+            values = parserUtil.readField(source, decoder.sourceName, decoder.keys);
+        }
+        return values;
+    }
+
+    /**
+     * Float doc values are returned widened to double (e.g. 1.1 is returned
+     * as 1.100000023841858), narrow them back to the indexed value.
+     */
+    private static List<Object> toFloats(List<Object> values) {
+        final List<Object> floats = new ArrayList<>(values.size());
+        for (final Object value : values) {
+            floats.add(value instanceof Number ? ((Number) value).floatValue() : value);
+        }
+        return floats;
+    }
+
+    public int getAttributeCount() {
+        return decoders.length;
+    }
+
+    public boolean isGeometry(int index) {
+        return decoders[index].kind == Kind.GEOMETRY;
+    }
+
+    /**
+     * @return Index of the default geometry when it is a geo_point and the
+     * only geometry attribute, otherwise -1
+     */
+    public int getGeoPointIndex() {
+        return geoPointIndex;
+    }
+
+    private static class AttributeDecoder {
+
+        private final int index;
+
+        private final String sourceName;
+
+        private final List<String> keys;
+
+        private final Kind kind;
+
+        private final boolean docValues;
+
+        private final boolean floatDocValues;
+
+        private final String dateFormat;
+
+        private final DateTimeFormatter dateParser;
+
+        private final long epochUnit;
+
+        AttributeDecoder(int index, AttributeDescriptor descriptor) {
+            final String name = descriptor.getType().getName().getLocalPart();
+            this.index = index;
+            this.sourceName = (String) descriptor.getUserData().get(FULL_NAME);
+            this.keys = sourceName != null
+                    ? Collections.unmodifiableList(Arrays.asList(sourceName.split("\\.")))
+                    : Collections.emptyList();
+            this.docValues = Boolean.TRUE.equals(descriptor.getUserData().get(DOC_VALUES));
+            final Class<?> binding = descriptor.getType().getBinding();
+            this.floatDocValues = docValues && Float.class.equals(binding);
+            if (name.equals("_id")) {
+                kind = Kind.ID;
+            } else if (name.equals("_index")) {
+                kind = Kind.INDEX;
+            } else if (name.equals("_type")) {
+                kind = Kind.TYPE;
+            } else if (name.equals("_score")) {
+                kind = Kind.SCORE;
+            } else if (name.equals("_relative_score")) {
+                kind = Kind.RELATIVE_SCORE;
+            } else if (Geometry.class.isAssignableFrom(binding)) {
+                kind = Kind.GEOMETRY;
+            } else if (Date.class.isAssignableFrom(binding)) {
+                kind = Kind.DATE;
+            } else if (name.equals("_aggregation")) {
+                kind = Kind.AGGREGATION;
+            } else {
+                kind = Kind.VALUE;
+            }
+
+            this.dateFormat = (String) descriptor.getUserData().get(DATE_FORMAT);
+            DateTimeFormatter dateParser = null;
+            long epochUnit = 0;
+            if (kind == Kind.DATE && dateFormat != null) {
+                try {
+                    dateParser = Joda.forPattern(dateFormat).parser();
+                } catch (Exception e) {
+                    LOGGER.fine("Unable to parse date format ('" + dateFormat + "') for " + sourceName);
+                }
+                final String first = dateFormat.split("\\|\\|")[0].trim();
+                if (first.equals("epoch_millis")) {
+                    epochUnit = 1;
+                } else if (first.equals("epoch_second")) {
+                    epochUnit = 1000;
+                }
+            }
+            this.dateParser = dateParser;
+            this.epochUnit = epochUnit;
+        }
+
+        /**
+         * @param value Date value
+         * @param field Whether the value was read from hit fields
+         */
+        Date parseDate(Object value, boolean field) {
+            final Date date;
+            if (value instanceof Double) {
+                date = new Date(Math.round((Double) value));
+            } else if (value instanceof Integer) {
+                date = new Date((Integer) value);
+            } else if (value instanceof Long) {
+                date = new Date((long) value);
+            } else if (docValues && field) {
+                // epoch_millis doc value
+                final String text = (String) value;
+                date = new Date(isInteger(text) ? Long.parseLong(text) : Math.round(Double.valueOf(text)));
+            } else {
+                final String text = (String) value;
+                if (epochUnit > 0 && isInteger(text)) {
+                    date = new Date(Long.parseLong(text) * epochUnit);
+                } else if (dateParser != null) {
+                    date = dateParser.parseDateTime(text).toDate();
+                } else {
+                    date = Joda.forPattern(dateFormat).parser().parseDateTime(text).toDate();
+                }
+            }
+            return date;
+        }
+
+    }
+
+    /**
+     * @return Whether the text is an optionally signed integer that fits in a
+     * long
+     */
+    static boolean isInteger(String text) {
+        final int length = text.length();
+        final int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -7,27 +7,27 @@ package mil.nga.giat.data.elasticsearch;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
-import mil.nga.giat.shaded.es.common.joda.Joda;
-import mil.nga.giat.shaded.joda.time.format.DateTimeFormatter;
-
-import static mil.nga.giat.data.elasticsearch.ElasticConstants.DATE_FORMAT;
-import static mil.nga.giat.data.elasticsearch.ElasticConstants.FULL_NAME;
 
 import org.geotools.data.FeatureReader;
 import org.geotools.data.store.ContentState;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.util.logging.Logging;
-import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.AttributeDescriptor;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -55,16 +55,60 @@ public class ElasticFeatureReader implements FeatureReader<SimpleFeatureType, Si
 
     private ElasticParserUtil parserUtil;
 
+    private final ElasticDecodePlan decodePlan;
+
+    private final ElasticMetrics metrics;
+
+    private final boolean lazyDecoding;
+
+    private final ElasticDataStore dataStore;
+
+    /**
+     * Pages of decoded features, in hit order, when hits are decoded in
+     * parallel
+     */
+    private List<Future<SimpleFeature[]>> decodedChunks;
+
+    private SimpleFeature[] decodedChunk;
+
+    private int chunkIndex;
+
+    private int featureIndex;
+
+    private int numDecoded;
+
+    /**
+     * Minimum number of hits decoded by a parallel decoding task
+     */
+    private static final int MIN_CHUNK_SIZE = 32;
+
+    /**
+     * Number of parallel decoding tasks per thread of the decoding pool
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
     public ElasticFeatureReader(ContentState contentState, ElasticResponse response) {
         this(contentState, response.getHits(), response.getAggregations(), response.getMaxScore());
     }
 
+    public ElasticFeatureReader(ContentState contentState, ElasticResponseStream stream) {
+        this(contentState, stream, null, stream.getMaxScore());
+    }
+
     public ElasticFeatureReader(ContentState contentState, List<ElasticHit> hits, Map<String,ElasticAggregation> aggregations, float maxScore) {
+        this(contentState, hits.iterator(), aggregations, maxScore);
+        final ForkJoinPool decodePool = dataStore != null ? dataStore.getDecodePool() : null;
+        if (decodePool != null && !lazyDecoding && hits.size() > MIN_CHUNK_SIZE) {
+            decodeParallel(decodePool, hits);
+        }
+    }
+
+    public ElasticFeatureReader(ContentState contentState, Iterator<ElasticHit> hits, Map<String,ElasticAggregation> aggregations, float maxScore) {
         this.state = contentState;
         this.featureType = state.getFeatureType();
-        this.searchHitIterator = hits.iterator();
+        this.searchHitIterator = hits;
         this.builder = new SimpleFeatureBuilder(featureType);
-        this.parserUtil = new ElasticParserUtil();
+        this.decodePlan = ElasticDecodePlan.get(featureType);
         this.maxScore = maxScore;
 
         this.aggregationIterator = Collections.emptyIterator();
@@ -79,12 +123,16 @@ public class ElasticFeatureReader implements FeatureReader<SimpleFeatureType, Si
         }
 
         if (contentState.getEntry() != null && contentState.getEntry().getDataStore() != null) {
-            final ElasticDataStore dataStore;
-            dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
+            this.dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
             this.arrayEncoding = dataStore.getArrayEncoding();
+            this.lazyDecoding = dataStore.isLazyDecodingEnabled();
         } else {
+            this.dataStore = null;
             this.arrayEncoding = ArrayEncoding.valueOf((String) ElasticDataStoreFactory.ARRAY_ENCODING.getDefaultValue());
+            this.lazyDecoding = false;
         }
+        this.parserUtil = createParserUtil();
+        this.metrics = getMetrics(contentState);
 
         this.mapper = new ObjectMapper();
     }
@@ -94,89 +142,144 @@ public class ElasticFeatureReader implements FeatureReader<SimpleFeatureType, Si
         return this.featureType;
     }
 
-    @Override
-    public SimpleFeature next() {
-        String id = searchHitIterator.hasNext() ? nextHit() : nextAggregation();
-        return builder.buildFeature(id);
-    }
-
-    private String nextHit() {
-        final ElasticHit hit = searchHitIterator.next();
-        final SimpleFeatureType type = getFeatureType();
-        final Map<String, Object> source = hit.getSource();
-
-        final Float score;
-        final Float relativeScore;
-        if (hit.getScore() != null && !Float.isNaN(hit.getScore()) && maxScore>0) {
-            score = hit.getScore();
-            relativeScore = score / maxScore;
+    private ElasticParserUtil createParserUtil() {
+        final ElasticParserUtil parserUtil;
+        if (dataStore == null) {
+            parserUtil = new ElasticParserUtil();
         } else {
-            score = null;
-            relativeScore = null;
+            if (dataStore.isFloatCoordinatesEnabled()) {
+                parserUtil = new ElasticParserUtil(PackedCoordinateSequenceFactory.FLOAT_FACTORY);
+            } else {
+                parserUtil = new ElasticParserUtil();
+            }
+            parserUtil.setGeometryCache(dataStore.getGeometryCache());
         }
+        return parserUtil;
+    }
 
-        for (final AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
-            final String name = descriptor.getType().getName().getLocalPart();
-            final String sourceName = (String) descriptor.getUserData().get(FULL_NAME);
+    /**
+     * Split the hits in chunks decoded by the pool. Each task uses its own
+     * builder and parser, features are returned in hit order by
+     * {@link #next()} as their chunk completes.
+     */
+    private void decodeParallel(ForkJoinPool decodePool, List<ElasticHit> hits) {
+        final int numHits = hits.size();
+        final int maxChunks = decodePool.getParallelism() * CHUNKS_PER_THREAD;
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, (numHits + maxChunks - 1) / maxChunks);
+        final List<Future<SimpleFeature[]>> chunks = new ArrayList<>();
+        try {
+            for (int from = 0; from < numHits; from += chunkSize) {
+                final int start = from;
+                final int end = Math.min(numHits, from + chunkSize);
+                chunks.add(decodePool.submit(() -> decodeChunk(hits, start, end)));
+            }
+        } catch (RejectedExecutionException e) {
+            // pool shut down after a configuration change, decode on this thread
+            LOGGER.fine("Decoding pool rejected page, decoding sequentially");
+            chunks.forEach(chunk -> chunk.cancel(false));
+            return;
+        }
+        decodedChunks = chunks;
+        numDecoded = numHits;
+        searchHitIterator = Collections.emptyIterator();
+    }
 
-            List<Object> values = hit.field(sourceName);
-            if (values == null && source != null) {
-                // read field from source
-                values = parserUtil.readField(source, sourceName);
+    private SimpleFeature[] decodeChunk(List<ElasticHit> hits, int start, int end) {
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        final ElasticParserUtil parserUtil = createParserUtil();
+        final SimpleFeature[] features = new SimpleFeature[end - start];
+        for (int i = start; i < end; i++) {
+            if (metrics == null) {
+                features[i - start] = decodeHit(hits.get(i), builder, parserUtil);
+            } else {
+                final long decodeStart = System.nanoTime();
+                features[i - start] = decodeHit(hits.get(i), builder, parserUtil);
+                metrics.recordDecode(System.nanoTime() - decodeStart);
             }
+        }
+        return features;
+    }
 
-            if (values == null && name.equals("_id")) {
-                builder.set(name, hit.getId());
-            } else if (values == null && name.equals("_index")) {
-                builder.set(name, hit.getIndex());
-            } else if (values == null && name.equals("_type")) {
-                builder.set(name, hit.getType());
-            } else if (values == null && name.equals("_score")) {
-                builder.set(name, score);
-            } else if (values == null && name.equals("_relative_score")) {
-                builder.set(name, relativeScore);
-            } else if (values == null) {
-                // skip missing attribute
-            } else if (Geometry.class.isAssignableFrom(descriptor.getType().getBinding())) {
-                if (values.size() == 1) {
-                    builder.set(name, parserUtil.createGeometry(values.get(0)));
-                } else {
-                    builder.set(name, parserUtil.createGeometry(values));
-                }
-            } else if (Date.class.isAssignableFrom(descriptor.getType().getBinding())) {
-                Object dataVal = values.get(0);
-                if (dataVal instanceof Double) {
-                    builder.set(name, new Date(Math.round((Double) dataVal)));
-                } else if (dataVal instanceof Integer) {
-                    builder.set(name, new Date((Integer) dataVal));
-                } else if (dataVal instanceof Long) {
-                    builder.set(name, new Date((long) dataVal));
-                } else {
-                    final String format = (String) descriptor.getUserData().get(DATE_FORMAT);
-                    final DateTimeFormatter dateFormatter = Joda.forPattern(format).parser();
-
-                    Date date = dateFormatter.parseDateTime((String) dataVal).toDate();
-                    builder.set(name, date);
+    private SimpleFeature nextDecoded() {
+        if (decodedChunk == null || featureIndex == decodedChunk.length) {
+            try {
+                decodedChunk = decodedChunks.get(chunkIndex).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NoSuchElementException("Interrupted while decoding features");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
-            } else if (values.size() == 1) {
-                builder.set(name, values.get(0));
-            } else if (!name.equals("_aggregation")) {
-                final Object value;
-                switch (arrayEncoding) {
-                    case CSV:
-                        // only include first array element when using CSV array encoding
-                        value = values.get(0);
-                        break;
-                    default:
-                        value = values;
-                }
-                builder.set(name, value);
+                throw new IllegalStateException("Error decoding features", e.getCause());
             }
+            decodedChunks.set(chunkIndex++, null);
+            featureIndex = 0;
+        }
+        numDecoded--;
+        final SimpleFeature feature = decodedChunk[featureIndex];
+        decodedChunk[featureIndex++] = null;
+        return feature;
+    }
+
+    @Override
+    public SimpleFeature next() {
+        if (numDecoded > 0) {
+            // decoding time is recorded by the decoding tasks
+            return nextDecoded();
         }
+        if (metrics == null) {
+            return nextFeature();
+        }
+        final long start = System.nanoTime();
+        final SimpleFeature feature = nextFeature();
+        metrics.recordDecode(System.nanoTime() - start);
+        return feature;
+    }
+
+    private SimpleFeature nextFeature() {
+        if (!searchHitIterator.hasNext()) {
+            return builder.buildFeature(nextAggregation());
+        }
+        final ElasticHit hit = searchHitIterator.next();
+        if (lazyDecoding) {
+            final Float score = getScore(hit);
+            final Float relativeScore = score != null ? score / maxScore : null;
+            return new ElasticSimpleFeature(featureType, getId(hit), hit, score, relativeScore, decodePlan, parserUtil,
+                    arrayEncoding);
+        }
+        return decodeHit(hit, builder, parserUtil);
+    }
 
+    private SimpleFeature decodeHit(ElasticHit hit, SimpleFeatureBuilder builder, ElasticParserUtil parserUtil) {
+        final Float score = getScore(hit);
+        final Float relativeScore = score != null ? score / maxScore : null;
+        decodePlan.decode(hit, score, relativeScore, builder, parserUtil, arrayEncoding);
+        return builder.buildFeature(getId(hit));
+    }
+
+    private String getId(ElasticHit hit) {
         return state.getEntry().getTypeName() + "." + hit.getId();
     }
 
+    /**
+     * @return Metrics of the layer read, or null if metrics are disabled
+     */
+    static ElasticMetrics getMetrics(ContentState contentState) {
+        if (contentState.getEntry() == null || !(contentState.getEntry().getDataStore() instanceof ElasticDataStore)) {
+            return null;
+        }
+        final ElasticDataStore dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
+        return dataStore.getLayerMetrics(contentState.getEntry().getTypeName());
+    }
+
+    private Float getScore(ElasticHit hit) {
+        if (hit.getScore() != null && !Float.isNaN(hit.getScore()) && maxScore>0) {
+            return hit.getScore();
+        }
+        return null;
+    }
+
     private String nextAggregation() {
         final Map<String, Object> aggregation = aggregationIterator.next();
         try {
@@ -190,13 +293,31 @@ public class ElasticFeatureReader implements FeatureReader<SimpleFeatureType, Si
 
     @Override
     public boolean hasNext() {
-        return searchHitIterator.hasNext() || aggregationIterator.hasNext();
+        return numDecoded > 0 || (searchHitIterator != null && searchHitIterator.hasNext()) || aggregationIterator.hasNext();
     }
 
     @Override
     public void close() {
+        if (searchHitIterator instanceof Closeable) {
+            try {
+                ((Closeable) searchHitIterator).close();
+            } catch (IOException e) {
+                LOGGER.warning("Error closing search response: " + e);
+            }
+        }
+        if (decodedChunks != null) {
+            for (final Future<SimpleFeature[]> chunk : decodedChunks) {
+                if (chunk != null) {
+                    chunk.cancel(false);
+                }
+            }
+            decodedChunks = null;
+            decodedChunk = null;
+            numDecoded = 0;
+        }
         builder = null;
         searchHitIterator = null;
+        aggregationIterator = Collections.emptyIterator();
     }
 
 }
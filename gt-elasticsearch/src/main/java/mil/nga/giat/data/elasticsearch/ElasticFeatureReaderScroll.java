@@ -5,10 +5,13 @@
 package mil.nga.giat.data.elasticsearch;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import org.geotools.data.FeatureReader;
@@ -35,18 +38,49 @@ public class ElasticFeatureReaderScroll implements FeatureReader<SimpleFeatureTy
 
     private Set<String> scrollIds;
 
+    private final boolean prefetch;
+
+    private CompletableFuture<ElasticResponse> nextResponse;
+
     public ElasticFeatureReaderScroll(ContentState contentState, ElasticResponse searchResponse, int maxFeatures) {
         this.contentState = contentState;
         this.maxFeatures = maxFeatures;
         this.numFeatures = 0;
         this.scrollIds = new HashSet<>();
+        this.prefetch = contentState.getEntry() != null && contentState.getEntry().getDataStore() != null
+                && ((ElasticDataStore) contentState.getEntry().getDataStore()).isScrollPrefetchEnabled();
         processResponse(searchResponse);
     }
 
     private void advanceScroll() throws IOException {
         final ElasticDataStore dataStore;
         dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
-        processResponse(dataStore.getClient().scroll(nextScrollId, dataStore.getScrollTime()));
+        final ElasticResponse searchResponse;
+        if (nextResponse != null) {
+            try {
+                searchResponse = nextResponse.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for scroll response", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Error executing scroll request", e.getCause());
+            } finally {
+                nextResponse = null;
+            }
+        } else {
+            searchResponse = dataStore.getClient().scroll(nextScrollId, dataStore.getScrollTime());
+        }
+        processResponse(searchResponse);
+    }
+
+    /**
+     * Request the next scroll page in the background while the current page
+     * is consumed. At most one page is fetched ahead of the consumer.
+     */
+    private void prefetchScroll() {
+        final ElasticDataStore dataStore;
+        dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
+        nextResponse = dataStore.getClient().scrollAsync(nextScrollId, dataStore.getScrollTime());
     }
 
     private void processResponse(ElasticResponse searchResponse) {
@@ -59,10 +93,17 @@ public class ElasticFeatureReaderScroll implements FeatureReader<SimpleFeatureTy
             hits = searchResponse.getResults().getHits().subList(0,n);
         }
         delegate = new ElasticFeatureReader(contentState, hits, searchResponse.getAggregations(), 0);
+        final ElasticMetrics metrics = ElasticFeatureReader.getMetrics(contentState);
+        if (metrics != null) {
+            metrics.recordScrollPage();
+        }
         nextScrollId = searchResponse.getScrollId();
         lastScroll = numHits == 0 || numFeatures+hits.size()>=maxFeatures;
         LOGGER.fine("Scoll numHits=" + hits.size() + " (total=" + numFeatures+hits.size());
         scrollIds.add(nextScrollId);
+        if (prefetch && !lastScroll) {
+            prefetchScroll();
+        }
     }
 
     @Override
@@ -92,6 +133,9 @@ public class ElasticFeatureReaderScroll implements FeatureReader<SimpleFeatureTy
 
     @Override
     public void close() throws IOException {
+        if (nextResponse != null) {
+            cancelPrefetch();
+        }
         if (!scrollIds.isEmpty()) {
             final ElasticDataStore dataStore;
             dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
@@ -100,4 +144,34 @@ public class ElasticFeatureReaderScroll implements FeatureReader<SimpleFeatureTy
         delegate.close();
     }
 
+    /**
+     * Release any outstanding background fetch. The in-flight HTTP request
+     * cannot be aborted, so a scroll id returned after the reader has been
+     * closed is cleared as soon as the response arrives. A request that fails
+     * because the scroll was already cleared is ignored.
+     */
+    private void cancelPrefetch() {
+        final CompletableFuture<ElasticResponse> pending = nextResponse;
+        nextResponse = null;
+        if (!pending.isDone()) {
+            final ElasticClient client = ((ElasticDataStore) contentState.getEntry().getDataStore()).getClient();
+            final Set<String> clearedScrollIds = new HashSet<>(scrollIds);
+            pending.thenAccept(response -> {
+                final String scrollId = response.getScrollId();
+                if (scrollId != null && !clearedScrollIds.contains(scrollId)) {
+                    try {
+                        client.clearScroll(Collections.singleton(scrollId));
+                    } catch (IOException e) {
+                        LOGGER.fine("Unable to clear scroll: " + e);
+                    }
+                }
+            });
+        } else if (!pending.isCompletedExceptionally()) {
+            final String scrollId = pending.join().getScrollId();
+            if (scrollId != null) {
+                scrollIds.add(scrollId);
+            }
+        }
+    }
+
 }
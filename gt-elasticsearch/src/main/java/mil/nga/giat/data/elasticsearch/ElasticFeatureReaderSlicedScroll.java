@@ -0,0 +1,197 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.store.ContentState;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Scroll reader that splits the search into independent slices which are
+ * scrolled concurrently. Pages are consumed in the order they arrive, so
+ * feature order is not defined. Each slice has at most one request in flight
+ * and one page waiting to be read.
+ *
+ */
+public class ElasticFeatureReaderSlicedScroll implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticFeatureReaderSlicedScroll.class);
+
+    private final ContentState contentState;
+
+    private final ElasticClient client;
+
+    private final Integer scrollTime;
+
+    private final int maxFeatures;
+
+    private final BlockingQueue<SlicePage> pages;
+
+    private final Set<String> scrollIds;
+
+    private ElasticFeatureReader delegate;
+
+    private int numFeatures;
+
+    private int activeSlices;
+
+    private boolean closed;
+
+    public ElasticFeatureReaderSlicedScroll(ContentState contentState, String searchIndices, String docType,
+            ElasticRequest searchRequest, int numSlices, int maxFeatures) {
+        final ElasticDataStore dataStore = (ElasticDataStore) contentState.getEntry().getDataStore();
+        this.contentState = contentState;
+        this.client = dataStore.getClient();
+        this.scrollTime = dataStore.getScrollTime();
+        this.maxFeatures = maxFeatures;
+        this.pages = new LinkedBlockingQueue<>();
+        this.scrollIds = new HashSet<>();
+        this.delegate = new ElasticFeatureReader(contentState, Collections.<ElasticHit>emptyList(), null, 0);
+        this.activeSlices = numSlices;
+
+        for (int id = 0; id < numSlices; id++) {
+            final ElasticRequest sliceRequest = new ElasticRequest(searchRequest);
+            sliceRequest.setSlice(id, numSlices);
+            handle(client.searchAsync(searchIndices, docType, sliceRequest));
+        }
+    }
+
+    private void handle(CompletableFuture<ElasticResponse> future) {
+        future.whenComplete((response, error) -> {
+            synchronized (pages) {
+                if (!closed) {
+                    pages.add(new SlicePage(response, error));
+                    return;
+                }
+            }
+            if (response != null && response.getScrollId() != null) {
+                clearScroll(Collections.singleton(response.getScrollId()));
+            }
+        });
+    }
+
+    private void nextPage() throws IOException {
+        final SlicePage page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for scroll response", e);
+        }
+        if (page.error != null) {
+            activeSlices = 0;
+            Throwable cause = page.error;
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw new IOException("Error executing sliced scroll request", cause);
+        }
+
+        final ElasticResponse response = page.response;
+        final String scrollId = response.getScrollId();
+        if (scrollId != null) {
+            scrollIds.add(scrollId);
+        }
+
+        List<ElasticHit> hits = response.getHits();
+        if (hits.isEmpty() || scrollId == null) {
+            activeSlices--;
+        } else if (numFeatures + hits.size() < maxFeatures) {
+            // fetch the next page of this slice while the current page is read
+            handle(client.scrollAsync(scrollId, scrollTime));
+        } else {
+            activeSlices = 0;
+        }
+        if (numFeatures + hits.size() > maxFeatures) {
+            hits = hits.subList(0, maxFeatures - numFeatures);
+        }
+        LOGGER.fine("Sliced scroll numHits=" + hits.size() + " (total=" + (numFeatures + hits.size()) + ")");
+        delegate = new ElasticFeatureReader(contentState, hits, null, 0);
+        final ElasticMetrics metrics = ElasticFeatureReader.getMetrics(contentState);
+        if (metrics != null) {
+            metrics.recordScrollPage();
+        }
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException {
+        final SimpleFeature feature;
+        if (hasNext()) {
+            numFeatures++;
+            feature = delegate.next();
+        } else {
+            throw new NoSuchElementException();
+        }
+        return feature;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        while (!delegate.hasNext() && activeSlices > 0 && numFeatures < maxFeatures) {
+            nextPage();
+        }
+        return delegate.hasNext() && numFeatures < maxFeatures;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final List<SlicePage> remaining = new ArrayList<>();
+        synchronized (pages) {
+            closed = true;
+            pages.drainTo(remaining);
+        }
+        for (final SlicePage page : remaining) {
+            if (page.response != null && page.response.getScrollId() != null) {
+                scrollIds.add(page.response.getScrollId());
+            }
+        }
+        if (!scrollIds.isEmpty()) {
+            client.clearScroll(scrollIds);
+        }
+        delegate.close();
+    }
+
+    private void clearScroll(Set<String> ids) {
+        try {
+            client.clearScroll(ids);
+        } catch (IOException e) {
+            LOGGER.fine("Unable to clear scroll: " + e);
+        }
+    }
+
+    private static class SlicePage {
+
+        private final ElasticResponse response;
+
+        private final Throwable error;
+
+        SlicePage(ElasticResponse response, Throwable error) {
+            this.response = response;
+            this.error = error;
+        }
+
+    }
+
+}
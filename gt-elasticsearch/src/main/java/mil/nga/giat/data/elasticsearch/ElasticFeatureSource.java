@@ -6,26 +6,40 @@ package mil.nga.giat.data.elasticsearch;
 
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FilteringFeatureReader;
 import org.geotools.data.Query;
+import org.geotools.data.ReTypeFeatureReader;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.google.common.collect.ImmutableMap;
+
+import mil.nga.giat.data.elasticsearch.ElasticAttribute.ElasticGeometryType;
+
 /**
  * Provides access to a specific type within the Elasticsearch index described
  * by the associated data store.
@@ -35,7 +49,7 @@ public class ElasticFeatureSource extends ContentFeatureSource {
 
     private final static Logger LOGGER = Logging.getLogger(ElasticFeatureSource.class);
 
-    private Boolean filterFullySupported;
+    private static final String BOUNDS_AGGREGATION = "bounds";
 
     public ElasticFeatureSource(ContentEntry entry, Query query) throws IOException {
         super(entry, query);
@@ -57,7 +71,10 @@ public class ElasticFeatureSource extends ContentFeatureSource {
     }
 
     /**
-     * Implementation that generates the total bounds
+     * Implementation that generates the total bounds. Bounds of a geo_point
+     * default geometry are computed by the cluster with a geo_bounds
+     * aggregation when the filter is fully supported and the query isn't
+     * limited. Otherwise the bounds of all features read are merged.
      */
     @Override
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
@@ -65,6 +82,36 @@ public class ElasticFeatureSource extends ContentFeatureSource {
         final CoordinateReferenceSystem crs = getSchema().getCoordinateReferenceSystem();
         final ReferencedEnvelope bounds = new ReferencedEnvelope(crs);
 
+        final GeometryDescriptor geometryDescriptor = getSchema().getGeometryDescriptor();
+        if (geometryDescriptor != null && query.isMaxFeaturesUnlimited() && query.getStartIndex() == null
+                && geometryDescriptor.getUserData().get(ElasticConstants.GEOMETRY_TYPE) == ElasticGeometryType.GEO_POINT) {
+            final ElasticRequest searchRequest = prepareSearchRequest(query, false);
+            if (searchRequest.isFilterFullySupported() && searchRequest.getAggregations() == null) {
+                final String field = (String) geometryDescriptor.getUserData().get(ElasticConstants.FULL_NAME);
+                final ElasticDataStore dataStore = getDataStore();
+                final ElasticRequest boundsRequest = new ElasticRequest();
+                boundsRequest.setQuery(searchRequest.getQuery());
+                boundsRequest.setSize(0);
+                boundsRequest.setTrackTotalHits(false);
+                final Map<String,Object> geoBounds = new HashMap<>();
+                geoBounds.put("field", field);
+                geoBounds.put("wrap_longitude", false);
+                final Map<String,Map<String,Map<String,Object>>> aggregations = new HashMap<>();
+                aggregations.put(BOUNDS_AGGREGATION, ImmutableMap.of("geo_bounds", geoBounds));
+                boundsRequest.setAggregations(aggregations);
+                final ElasticResponse response = search(dataStore.getDocType(entry.getName()), boundsRequest);
+                final ElasticAggregation aggregation = response.getAggregations() != null
+                        ? response.getAggregations().get(BOUNDS_AGGREGATION) : null;
+                if (aggregation != null && aggregation.getBounds() != null) {
+                    final Map<String,Object> topLeft = getCorner(aggregation.getBounds(), "top_left");
+                    final Map<String,Object> bottomRight = getCorner(aggregation.getBounds(), "bottom_right");
+                    bounds.expandToInclude(toDouble(topLeft.get("lon")), toDouble(topLeft.get("lat")));
+                    bounds.expandToInclude(toDouble(bottomRight.get("lon")), toDouble(bottomRight.get("lat")));
+                }
+                return bounds;
+            }
+        }
+
         try (FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReaderInternal(query)) {
             while (featureReader.hasNext()) {
                 final SimpleFeature feature = featureReader.next();
@@ -74,13 +121,34 @@ public class ElasticFeatureSource extends ContentFeatureSource {
         return bounds;
     }
 
+    @SuppressWarnings("unchecked")
+    private static Map<String,Object> getCorner(Map<String,Object> bounds, String name) throws IOException {
+        final Object corner = bounds.get(name);
+        if (!(corner instanceof Map)) {
+            throw new IOException("Unexpected geo_bounds aggregation response: " + bounds);
+        }
+        return (Map<String,Object>) corner;
+    }
+
+    private static double toDouble(Object value) throws IOException {
+        if (!(value instanceof Number)) {
+            throw new IOException("Unexpected geo_bounds coordinate: " + value);
+        }
+        return ((Number) value).doubleValue();
+    }
+
     @Override
     protected int getCountInternal(Query query) throws IOException {
         LOGGER.fine("getCountInternal");
         int hits = 0;
-        final ElasticRequest searchRequest = prepareSearchRequest(query, false);
+        ElasticTrace trace = null;
         try {
-            if (!filterFullySupported) {
+            // the filter must be encoded to know whether it is fully supported
+            final long planStart = System.nanoTime();
+            final ElasticRequest searchRequest = prepareSearchRequest(query, false);
+            final long planNanos = System.nanoTime() - planStart;
+            if (!searchRequest.isFilterFullySupported()) {
+                // traced by the reader
                 try (FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReaderInternal(query)) {
                     while (reader.hasNext()) {
                         reader.next();
@@ -88,11 +156,25 @@ public class ElasticFeatureSource extends ContentFeatureSource {
                     }
                 }
             } else {
-                searchRequest.setSize(0);
+                trace = startTrace();
+                if (trace != null) {
+                    trace.add(ElasticTrace.Phase.PLAN, planNanos);
+                    searchRequest.setTrace(trace);
+                }
                 final ElasticDataStore dataStore = getDataStore();
                 final String docType = dataStore.getDocType(entry.getName());
-                final ElasticResponse sr = dataStore.getClient().search(dataStore.getIndexName(), docType, searchRequest);
-                final int totalHits = (int) sr.getTotalNumHits();
+                final ElasticCountCache countCache = dataStore.getCountCache();
+                final int totalHits;
+                if (countCache != null && query.getStartIndex() != null && searchRequest.getAggregations() == null
+                        && !usePagination(query, searchRequest)) {
+                    // search the page now and keep it for the reader
+                    searchRequest.setTrackTotalHits(true);
+                    final ElasticResponse sr = search(docType, searchRequest);
+                    countCache.putPage(dataStore.getIndexName(), docType, searchRequest, sr);
+                    totalHits = (int) sr.getTotalNumHits();
+                } else {
+                    totalHits = (int) getTotalHits(docType, searchRequest);
+                }
                 final int size = getSize(query);
                 final int from = getStartIndex(query);
                 hits = Math.max(0, Math.min(totalHits - from, size));
@@ -100,6 +182,10 @@ public class ElasticFeatureSource extends ContentFeatureSource {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new IOException("Error executing count search", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
         }
 
         return hits;
@@ -109,30 +195,301 @@ public class ElasticFeatureSource extends ContentFeatureSource {
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query) throws IOException {
         LOGGER.fine("getReaderInternal");
         FeatureReader<SimpleFeatureType, SimpleFeature> reader = null;
+        ElasticTrace trace = null;
         try {
             final ElasticDataStore dataStore = getDataStore();
             final String docType = dataStore.getDocType(entry.getName());
             final boolean scroll = !useSortOrPagination(query) && dataStore.getScrollEnabled();
-            final ElasticRequest searchRequest = prepareSearchRequest(query, scroll);
-            final ElasticResponse sr = dataStore.getClient().search(dataStore.getIndexName(), docType, searchRequest);
-            if (LOGGER.isLoggable(Level.FINE)) {
-                LOGGER.fine("Search response: " + sr);
+            trace = startTrace();
+            final ElasticRequest searchRequest = prepareSearchRequest(query, scroll, trace);
+            recordQuery(searchRequest);
+            final ElasticCountCache countCache = dataStore.getCountCache();
+            final boolean page = !scroll && !usePagination(query, searchRequest)
+                    && searchRequest.getAggregations() == null;
+            if (page && countCache != null) {
+                // count the hits to answer later counts of the same query
+                searchRequest.setTrackTotalHits(true);
+            } else if (page && !useResultCache()) {
+                // the page is only decoded by a reader which never reads the
+                // total, and the response isn't shared through the cache
+                searchRequest.setTrackTotalHits(false);
             }
-            if (!scroll) {
-                reader = new ElasticFeatureReader(getState(), sr);
+            final ElasticResponse counted;
+            if (page && countCache != null) {
+                counted = countCache.takePage(dataStore.getIndexName(), docType, searchRequest);
             } else {
-                reader = new ElasticFeatureReaderScroll(getState(), sr, getSize(query));
+                counted = null;
             }
-            if (!filterFullySupported) {
-                reader = new FilteringFeatureReader<SimpleFeatureType, SimpleFeature>(reader, query.getFilter());
+            if (counted != null) {
+                reader = createReader(query, counted, false);
+            } else if (usePagination(query, searchRequest)) {
+                final int maxResultWindow;
+                if (dataStore.getMaxResultWindow() != null) {
+                    maxResultWindow = dataStore.getMaxResultWindow();
+                } else {
+                    maxResultWindow = (Integer) ElasticDataStoreFactory.MAX_RESULT_WINDOW.getDefaultValue();
+                }
+                final ElasticResponse sr = dataStore.getPagination().search(dataStore.getClient(),
+                        dataStore.getIndexName(), docType, searchRequest, maxResultWindow, dataStore.getScrollTime());
+                reader = createReader(query, sr, false);
+            } else if (!scroll && dataStore.isStreamingEnabled() && searchRequest.getAggregations() == null
+                    && !useResultCache()) {
+                final ElasticResponseStream stream;
+                stream = dataStore.getClient().searchStream(dataStore.getIndexName(), docType, searchRequest);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Search response: " + stream);
+                }
+                reader = new ElasticFeatureReader(getState(), stream);
+            } else if (scroll && useSlicedScroll()) {
+                reader = new ElasticFeatureReaderSlicedScroll(getState(), dataStore.getIndexName(), docType,
+                        searchRequest, dataStore.getScrollSlices(), getSize(query));
+            } else {
+                final ElasticResponse sr = search(docType, searchRequest);
+                if (countCache != null && Boolean.TRUE.equals(searchRequest.getTrackTotalHits())) {
+                    countCache.putTotal(dataStore.getIndexName(), docType, searchRequest, sr.getTotalNumHits());
+                }
+                reader = createReader(query, sr, scroll);
             }
+            reader = wrapReader(query, searchRequest, reader);
         } catch (Exception e) {
+            if (trace != null) {
+                trace.finish();
+            }
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             throw new IOException("Error executing query search", e);
         }
         return reader;
     }
 
+    /**
+     * Asynchronous reader access. The search request is prepared on the
+     * calling thread and the returned future completes once the search
+     * response (first page when scrolling) has been received and parsed,
+     * without tying up a thread while waiting on Elasticsearch. The result
+     * and count caches, tracing and layer metrics are used as by
+     * {@link #getReader(Query)}, but no reprojection or transaction state is
+     * applied. Paged queries when search_after is enabled and sliced scrolls
+     * need several searches and fail with an
+     * {@link UnsupportedOperationException}.
+     *
+     * @param query Query
+     * @return Future feature reader
+     */
+    public CompletableFuture<FeatureReader<SimpleFeatureType, SimpleFeature>> getReaderAsync(Query query) {
+        LOGGER.fine("getReaderAsync");
+        ElasticTrace trace = null;
+        try {
+            final Query joinedQuery = joinQuery(query);
+            final ElasticDataStore dataStore = getDataStore();
+            final String docType = dataStore.getDocType(entry.getName());
+            final boolean scroll = !useSortOrPagination(joinedQuery) && dataStore.getScrollEnabled();
+            trace = startTrace();
+            final ElasticRequest searchRequest = prepareSearchRequest(joinedQuery, scroll, trace);
+            if (usePagination(joinedQuery, searchRequest)) {
+                throw new UnsupportedOperationException("Asynchronous paged reads not supported with search_after");
+            } else if (scroll && useSlicedScroll()) {
+                throw new UnsupportedOperationException("Asynchronous sliced scroll not supported");
+            }
+            recordQuery(searchRequest);
+            final ElasticCountCache countCache = dataStore.getCountCache();
+            final boolean page = !scroll && searchRequest.getAggregations() == null;
+            if (page && countCache != null) {
+                searchRequest.setTrackTotalHits(true);
+            } else if (page && !useResultCache()) {
+                searchRequest.setTrackTotalHits(false);
+            }
+            final ElasticResponse counted;
+            if (page && countCache != null) {
+                counted = countCache.takePage(dataStore.getIndexName(), docType, searchRequest);
+            } else {
+                counted = null;
+            }
+            final SimpleFeatureType featureType;
+            if (!joinedQuery.retrieveAllProperties()) {
+                featureType = SimpleFeatureTypeBuilder.retype(getSchema(), joinedQuery.getPropertyNames());
+            } else {
+                featureType = null;
+            }
+
+            final CompletableFuture<ElasticResponse> response;
+            if (counted != null) {
+                response = CompletableFuture.completedFuture(counted);
+            } else {
+                response = searchAsync(docType, searchRequest);
+            }
+            final ElasticTrace searchTrace = trace;
+            return response.thenApply(sr -> {
+                if (counted == null && countCache != null && Boolean.TRUE.equals(searchRequest.getTrackTotalHits())) {
+                    countCache.putTotal(dataStore.getIndexName(), docType, searchRequest, sr.getTotalNumHits());
+                }
+                FeatureReader<SimpleFeatureType, SimpleFeature> reader = createReader(joinedQuery, sr, scroll);
+                reader = wrapReader(joinedQuery, searchRequest, reader);
+                if (featureType != null) {
+                    reader = new ReTypeFeatureReader(reader, featureType, false);
+                }
+                return reader;
+            }).whenComplete((reader, error) -> {
+                if (error != null && searchTrace != null) {
+                    searchTrace.finish();
+                }
+            });
+        } catch (Exception e) {
+            if (trace != null) {
+                trace.finish();
+            }
+            final CompletableFuture<FeatureReader<SimpleFeatureType, SimpleFeature>> failed = new CompletableFuture<>();
+            if (e instanceof UnsupportedOperationException) {
+                failed.completeExceptionally(e);
+            } else {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                failed.completeExceptionally(new IOException("Error executing query search", e));
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Total number of hits of the search request query, from the count cache
+     * when available. Uses the _count API unless the result cache is enabled
+     * for this layer.
+     */
+    private long getTotalHits(String docType, ElasticRequest searchRequest) throws IOException {
+        final ElasticDataStore dataStore = getDataStore();
+        final ElasticCountCache countCache = dataStore.getCountCache();
+        if (countCache != null) {
+            final Long total = countCache.getTotal(dataStore.getIndexName(), docType, searchRequest);
+            if (total != null) {
+                return total;
+            }
+        }
+        final long total;
+        if (useResultCache()) {
+            searchRequest.setSize(0);
+            searchRequest.setTrackTotalHits(true);
+            total = search(docType, searchRequest).getTotalNumHits();
+        } else {
+            total = dataStore.getClient().count(dataStore.getIndexName(), docType, searchRequest);
+        }
+        if (countCache != null) {
+            countCache.putTotal(dataStore.getIndexName(), docType, searchRequest, total);
+        }
+        return total;
+    }
+
+    /**
+     * Execute search, using the result cache when enabled for this layer.
+     * Scroll requests are never cached.
+     */
+    private ElasticResponse search(String docType, ElasticRequest searchRequest) throws IOException {
+        final ElasticDataStore dataStore = getDataStore();
+        final ElasticMetrics metrics = dataStore.getLayerMetrics(entry.getTypeName());
+        final long start = System.nanoTime();
+        ElasticResponse sr = null;
+        try {
+            if (searchRequest.getScroll() == null && useResultCache()) {
+                sr = dataStore.getResultCache().search(dataStore.getClient(), dataStore.getIndexName(), docType,
+                        searchRequest, metrics);
+            } else {
+                sr = dataStore.getClient().search(dataStore.getIndexName(), docType, searchRequest);
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.recordRequest(System.nanoTime() - start, sr == null);
+            }
+        }
+        return sr;
+    }
+
+    /**
+     * Execute search without blocking, using the result cache when enabled
+     * for this layer.
+     */
+    private CompletableFuture<ElasticResponse> searchAsync(String docType, ElasticRequest searchRequest) {
+        final ElasticDataStore dataStore = getDataStore();
+        final ElasticMetrics metrics = dataStore.getLayerMetrics(entry.getTypeName());
+        final long start = System.nanoTime();
+        final CompletableFuture<ElasticResponse> future;
+        if (searchRequest.getScroll() == null && useResultCache()) {
+            future = dataStore.getResultCache().searchAsync(dataStore.getClient(), dataStore.getIndexName(), docType,
+                    searchRequest, metrics);
+        } else {
+            future = dataStore.getClient().searchAsync(dataStore.getIndexName(), docType, searchRequest);
+        }
+        if (metrics == null) {
+            return future;
+        }
+        return future.whenComplete((sr, error) -> metrics.recordRequest(System.nanoTime() - start, error != null));
+    }
+
+    private void recordQuery(ElasticRequest searchRequest) {
+        final ElasticMetrics metrics = getDataStore().getLayerMetrics(entry.getTypeName());
+        if (metrics != null) {
+            metrics.recordQuery(!searchRequest.isFilterFullySupported());
+        }
+    }
+
+    private boolean useResultCache() {
+        return getDataStore().isResultCacheEnabled(entry.getTypeName());
+    }
+
+    private FeatureReader<SimpleFeatureType, SimpleFeature> createReader(Query query, ElasticResponse sr, boolean scroll) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Search response: " + sr);
+        }
+        final FeatureReader<SimpleFeatureType, SimpleFeature> reader;
+        if (!scroll) {
+            reader = new ElasticFeatureReader(getState(), sr);
+        } else {
+            reader = new ElasticFeatureReaderScroll(getState(), sr, getSize(query));
+        }
+        return reader;
+    }
+
+    /**
+     * Trace the reader when the request is traced and filter the features
+     * when the filter isn't fully supported.
+     */
+    private FeatureReader<SimpleFeatureType, SimpleFeature> wrapReader(Query query, ElasticRequest searchRequest,
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
+        final ElasticTrace trace = searchRequest.getTrace();
+        final boolean fullySupported = searchRequest.isFilterFullySupported();
+        if (trace != null) {
+            final ElasticTracingFeatureReader decoder;
+            decoder = new ElasticTracingFeatureReader(reader, trace, null, fullySupported);
+            reader = decoder;
+            if (!fullySupported) {
+                reader = new FilteringFeatureReader<SimpleFeatureType, SimpleFeature>(reader, query.getFilter());
+                reader = new ElasticTracingFeatureReader(reader, trace, decoder, true);
+            }
+        } else if (!fullySupported) {
+            reader = new FilteringFeatureReader<SimpleFeatureType, SimpleFeature>(reader, query.getFilter());
+        }
+        return reader;
+    }
+
+    /**
+     * @return Trace of a query of this layer, or null if queries aren't
+     * traced
+     */
+    private ElasticTrace startTrace() {
+        final Integer threshold = getDataStore().getSlowQueryThreshold();
+        return ElasticTrace.start(entry.getTypeName(), threshold != null ? threshold : 0);
+    }
+
+    /**
+     * Prepare the search request, recording the time spent in the trace.
+     */
+    private ElasticRequest prepareSearchRequest(Query query, boolean scroll, ElasticTrace trace) throws IOException {
+        if (trace == null) {
+            return prepareSearchRequest(query, scroll);
+        }
+        final long start = System.nanoTime();
+        final ElasticRequest searchRequest = prepareSearchRequest(query, scroll);
+        trace.add(ElasticTrace.Phase.PLAN, System.nanoTime() - start);
+        searchRequest.setTrace(trace);
+        return searchRequest;
+    }
+
     private ElasticRequest prepareSearchRequest(Query query, boolean scroll) throws IOException {
         final ElasticRequest searchRequest = new ElasticRequest();
         final ElasticDataStore dataStore = getDataStore();
@@ -166,8 +523,13 @@ public class ElasticFeatureSource extends ContentFeatureSource {
 
         if (dataStore.isSourceFilteringEnabled()) {
             if (query.getProperties() != Query.ALL_PROPERTIES) {
+                final Map<String,ElasticAttribute> docValueAttributes = getDocValueAttributes();
                 for (String property : query.getPropertyNames()) {
-                    searchRequest.addSourceInclude(property);
+                    if (docValueAttributes.containsKey(property)) {
+                        addDocValueField(searchRequest, docValueAttributes.get(property));
+                    } else {
+                        searchRequest.addSourceInclude(property);
+                    }
                 }
             } else {
                 // add source includes
@@ -179,8 +541,9 @@ public class ElasticFeatureSource extends ContentFeatureSource {
         final FilterToElastic filterToElastic = new FilterToElastic();
         filterToElastic.setFeatureType(buildFeatureType());
         filterToElastic.encode(query);
-        filterFullySupported = filterToElastic.getFullySupported();
-        if (!filterFullySupported) {
+        final boolean fullySupported = filterToElastic.getFullySupported();
+        searchRequest.setFilterFullySupported(fullySupported);
+        if (!fullySupported) {
             LOGGER.fine("Filter is not fully supported by native Elasticsearch."
                     + " Additional post-query filtering will be performed.");
         }
@@ -188,6 +551,10 @@ public class ElasticFeatureSource extends ContentFeatureSource {
 
         searchRequest.setQuery(queryBuilder);
 
+        if (dataStore.isResponseFilteringEnabled()) {
+            searchRequest.setHitMetadata(getHitMetadata(query, fullySupported));
+        }
+
         if (filterToElastic.getAggregations() != null) {
             final Map<String, Map<String, Map<String, Object>>> aggregations = filterToElastic.getAggregations();
             final Envelope envelope = (Envelope) query.getFilter().accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
@@ -213,18 +580,96 @@ public class ElasticFeatureSource extends ContentFeatureSource {
         return searchRequest;
     }
 
+    /**
+     * Hit metadata read for the query properties. All metadata attributes are
+     * read when the filter is evaluated after the search since it may
+     * reference attributes outside of the query properties.
+     */
+    private Set<String> getHitMetadata(Query query, boolean fullySupported) {
+        final List<String> names;
+        if (query.retrieveAllProperties() || !fullySupported) {
+            names = getSchema().getAttributeDescriptors().stream()
+                    .map(descriptor -> descriptor.getLocalName())
+                    .collect(Collectors.toList());
+        } else {
+            names = Arrays.asList(query.getPropertyNames());
+        }
+        final Set<String> hitMetadata = new HashSet<>();
+        for (final String name : names) {
+            switch (name) {
+            case "_index":
+            case "_type":
+            case "_score":
+                hitMetadata.add(name);
+                break;
+            case "_relative_score":
+                hitMetadata.add("_score");
+                break;
+            }
+        }
+        return hitMetadata;
+    }
+
     private void setSourceIncludes(final ElasticRequest searchRequest) throws IOException {
         final ElasticDataStore dataStore = getDataStore();
         final List<ElasticAttribute> attributes = dataStore.getElasticAttributes(entry.getName());
+        final boolean docValuesSupported = dataStore.getClient().getVersion() >= 5;
         for (final ElasticAttribute attribute : attributes) {
             if (attribute.isUse() && attribute.isStored()) {
                 searchRequest.addField(attribute.getName());
+            } else if (attribute.isUse() && attribute.isReadFromDocValues() && docValuesSupported) {
+                addDocValueField(searchRequest, attribute);
             } else if (attribute.isUse()) {
                 searchRequest.addSourceInclude(attribute.getName());
             }
         }
     }
 
+    /**
+     * @return Attributes read from doc values by full and display name,
+     * empty when doc values are not supported by the cluster
+     */
+    private Map<String,ElasticAttribute> getDocValueAttributes() throws IOException {
+        final ElasticDataStore dataStore = getDataStore();
+        final Map<String,ElasticAttribute> docValueAttributes = new HashMap<>();
+        if (dataStore.getClient().getVersion() >= 5) {
+            for (final ElasticAttribute attribute : dataStore.getElasticAttributes(entry.getName())) {
+                if (attribute.isUse() && attribute.isReadFromDocValues()) {
+                    docValueAttributes.put(attribute.getName(), attribute);
+                    docValueAttributes.put(attribute.getDisplayName(), attribute);
+                }
+            }
+        }
+        return docValueAttributes;
+    }
+
+    /**
+     * Read an attribute from doc values. Dates are requested as epoch_millis,
+     * the format is only sent to 6.4 and later while earlier versions return
+     * epoch milliseconds as a number. Doc values of multi-valued fields are
+     * sorted and, for keyword fields, deduplicated.
+     */
+    private static void addDocValueField(ElasticRequest searchRequest, ElasticAttribute attribute) {
+        final String format = Date.class.isAssignableFrom(attribute.getType()) ? "epoch_millis" : null;
+        searchRequest.addDocValueField(attribute.getName(), format);
+    }
+
+    /**
+     * Whether the paged query should be executed through the pagination
+     * engine. Requires the filter to be fully supported since offsets are
+     * otherwise applied before post-filtering.
+     */
+    private boolean usePagination(Query query, ElasticRequest searchRequest) {
+        return getDataStore().isSearchAfterEnabled() && query.getStartIndex() != null
+                && searchRequest.isFilterFullySupported() && searchRequest.getAggregations() == null;
+    }
+
+    private boolean useSlicedScroll() {
+        final ElasticDataStore dataStore = getDataStore();
+        return dataStore.getScrollSlices() != null && dataStore.getScrollSlices() > 1
+                && dataStore.getClient().getVersion() >= 5;
+    }
+
     private boolean useSortOrPagination(Query query) {
         return (query.getSortBy() != null && query.getSortBy().length > 0) ||
                 query.getStartIndex()!=null;
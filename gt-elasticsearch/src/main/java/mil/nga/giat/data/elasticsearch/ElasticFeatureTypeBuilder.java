@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 
 import static mil.nga.giat.data.elasticsearch.ElasticConstants.ANALYZED;
 import static mil.nga.giat.data.elasticsearch.ElasticConstants.DATE_FORMAT;
+import static mil.nga.giat.data.elasticsearch.ElasticConstants.DOC_VALUES;
 import static mil.nga.giat.data.elasticsearch.ElasticConstants.FULL_NAME;
 import static mil.nga.giat.data.elasticsearch.ElasticConstants.GEOMETRY_TYPE;
 import static mil.nga.giat.data.elasticsearch.ElasticConstants.NESTED;
@@ -87,6 +88,7 @@ public class ElasticFeatureTypeBuilder extends SimpleFeatureTypeBuilder {
                         att.getUserData().put(FULL_NAME, attribute.getName());
                         att.getUserData().put(ANALYZED, attribute.getAnalyzed());
                         att.getUserData().put(NESTED, attribute.isNested());
+                        att.getUserData().put(DOC_VALUES, attribute.isReadFromDocValues());
                         add(att);
                     }
                 }
@@ -0,0 +1,167 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.locationtech.jts.geom.Geometry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of geometries decoded from geo_shape values, keyed on a 128 bit hash
+ * of the raw value. Documents sharing the same shape (e.g. a denormalized
+ * boundary) get the same geometry instance, within and across requests.
+ * Entries are evicted least recently used once the estimated size of all
+ * cached geometries exceeds the configured number of bytes. Cached geometries
+ * are shared between features and must not be modified.
+ *
+ */
+public class ElasticGeometryCache {
+
+    private static final int GEOMETRY_OVERHEAD = 64;
+
+    private static final int COORDINATE_SIZE = 16;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Cache<HashCode,Geometry> geometries;
+
+    /**
+     * @param maxBytes Maximum estimated size of all cached geometries
+     */
+    public ElasticGeometryCache(long maxBytes) {
+        this.geometries = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((HashCode key, Geometry geometry) -> weigh(geometry))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return Whether the value is a geo_shape worth caching. Points are
+     * cheaper to decode than to hash and are not cached.
+     */
+    public static boolean isCacheable(Object value) {
+        if (value instanceof Map) {
+            final Object type = ((Map<?,?>) value).get("type");
+            return type instanceof String && !"point".equalsIgnoreCase((String) type);
+        } else if (value instanceof String) {
+            final String wkt = (String) value;
+            return ElasticWktParser.isWkt(wkt) && !wkt.startsWith("POINT");
+        }
+        return false;
+    }
+
+    /**
+     * Return the cached geometry of the value or decode and cache it.
+     * Values decoding to null are not cached.
+     */
+    public Geometry get(Object value, Function<Object,Geometry> decoder) {
+        try {
+            return geometries.get(hash(value), () -> {
+                final Geometry geometry = decoder.apply(value);
+                if (geometry == null) {
+                    throw new MissingGeometryException();
+                }
+                return geometry;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof MissingGeometryException) {
+                return null;
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void invalidateAll() {
+        geometries.invalidateAll();
+    }
+
+    public long size() {
+        return geometries.size();
+    }
+
+    public CacheStats getStats() {
+        return geometries.stats();
+    }
+
+    public long getHitCount() {
+        return geometries.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return geometries.stats().missCount();
+    }
+
+    static HashCode hash(Object value) {
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        hash(value, hasher);
+        return hasher.hash();
+    }
+
+    private static void hash(Object value, Hasher hasher) {
+        if (value == null) {
+            hasher.putByte((byte) 0);
+        } else if (value instanceof Number) {
+            hasher.putByte((byte) 1).putDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            final String string = (String) value;
+            hasher.putByte((byte) 2).putInt(string.length()).putUnencodedChars(string);
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            hasher.putByte((byte) 3).putInt(list.size());
+            for (final Object item : list) {
+                hash(item, hasher);
+            }
+        } else if (value instanceof Map) {
+            final Map<?,?> map = (Map<?,?>) value;
+            hasher.putByte((byte) 4).putInt(map.size());
+            // hash entries in key order so that field order doesn't matter
+            final Object[] keys = map.keySet().toArray();
+            Arrays.sort(keys, Comparator.comparing(String::valueOf));
+            for (final Object key : keys) {
+                hash(key, hasher);
+                hash(map.get(key), hasher);
+            }
+        } else {
+            hasher.putByte((byte) 5).putUnencodedChars(value.toString());
+        }
+    }
+
+    /**
+     * Approximate heap size of a cached geometry in bytes.
+     */
+    static int weigh(Geometry geometry) {
+        final long size = GEOMETRY_OVERHEAD * (long) (geometry.getNumGeometries() + 1)
+                + COORDINATE_SIZE * (long) geometry.getNumPoints();
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static class MissingGeometryException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        MissingGeometryException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a duplicate (hedged) search is sent. The hedge delay is the
+ * configured percentile of recently observed search latencies, recomputed
+ * periodically over a sliding window of samples. No hedging is done until
+ * enough samples have been recorded.
+ *
+ */
+public class ElasticHedgePolicy {
+
+    private static final int WINDOW_SIZE = 1000;
+
+    private static final int MIN_SAMPLES = 20;
+
+    private static final int UPDATE_INTERVAL = 50;
+
+    private final double percentile;
+
+    private final long minDelayMillis;
+
+    private final long[] samples;
+
+    private int numSamples;
+
+    private int next;
+
+    private int sinceUpdate;
+
+    private volatile long delayMillis;
+
+    private final AtomicLong hedgedCount;
+
+    private final AtomicLong hedgeWinCount;
+
+    /**
+     * @param percentile Latency percentile (0-100) after which a search is
+     * hedged
+     * @param minDelayMillis Minimum hedge delay in milliseconds
+     */
+    public ElasticHedgePolicy(double percentile, long minDelayMillis) {
+        this.percentile = Math.max(0, Math.min(100, percentile));
+        this.minDelayMillis = minDelayMillis;
+        this.samples = new long[WINDOW_SIZE];
+        this.delayMillis = -1;
+        this.hedgedCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+    }
+
+    /**
+     * @return Delay in milliseconds before a hedged search is sent, or -1 if
+     * searches should not be hedged yet
+     */
+    public long getDelay() {
+        return delayMillis;
+    }
+
+    public synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % WINDOW_SIZE;
+        numSamples = Math.min(numSamples + 1, WINDOW_SIZE);
+        sinceUpdate++;
+        if (numSamples >= MIN_SAMPLES && (delayMillis < 0 || sinceUpdate >= UPDATE_INTERVAL)) {
+            final long[] sorted = Arrays.copyOf(samples, numSamples);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100 * numSamples) - 1;
+            delayMillis = Math.max(minDelayMillis, sorted[Math.max(0, Math.min(numSamples - 1, index))]);
+            sinceUpdate = 0;
+        }
+    }
+
+    void hedged() {
+        hedgedCount.incrementAndGet();
+    }
+
+    void hedgeWon() {
+        hedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * @return Number of duplicate searches sent
+     */
+    public long getHedgedCount() {
+        return hedgedCount.get();
+    }
+
+    /**
+     * @return Number of duplicate searches that answered first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non-negative values with power of two buckets.
+ * Percentiles are estimated from the upper bound of the bucket containing
+ * the requested rank, so they are accurate within a factor of two.
+ *
+ */
+public class ElasticHistogram {
+
+    private static final int NUM_BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+
+    private final LongAdder count;
+
+    private final LongAdder sum;
+
+    private final LongAccumulator max;
+
+    public ElasticHistogram() {
+        this.buckets = new AtomicLongArray(NUM_BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long value) {
+        final long v = Math.max(0, value);
+        buckets.incrementAndGet(getBucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        final long n = count.sum();
+        return n > 0 ? (double) sum.sum() / n : 0;
+    }
+
+    /**
+     * @param percentile Percentile (0-100)
+     * @return Estimated value at the percentile, or 0 when empty
+     */
+    public long getPercentile(double percentile) {
+        final long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Bucket 0 holds 0, bucket i holds values in [2^(i-1), 2^i).
+     */
+    private static int getBucket(long value) {
+        return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static long getUpperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+}
@@ -30,6 +30,8 @@ public class ElasticHit {
 
     private Map<String,List<Object>> fields;
 
+    private List<Object> sort;
+
     public String getIndex() {
         return index;
     }
@@ -70,10 +72,22 @@ public class ElasticHit {
         this.source = source;
     }
 
+    public Map<String, List<Object>> getFields() {
+        return fields;
+    }
+
     public void setFields(Map<String, List<Object>> fields) {
         this.fields = fields;
     }
 
+    public List<Object> getSort() {
+        return sort;
+    }
+
+    public void setSort(List<Object> sort) {
+        this.sort = sort;
+    }
+
     public List<Object> field(String name) {
         return this.fields != null ? this.fields.get(name) : null;
     }
@@ -0,0 +1,149 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import mil.nga.giat.data.elasticsearch.ElasticMappings.Mapping;
+
+/**
+ * Thread-safe cache of index metadata (mappings, alias resolution and server
+ * version). Mappings and aliases expire after a fixed time since they were
+ * loaded and are not cached at all when the time to live is zero. Empty
+ * mappings (missing index) are not cached. The server version is kept until
+ * invalidated. Concurrent requests for a missing entry are loaded once.
+ * <p>
+ * Cached mappings are shared between callers and must not be modified.
+ *
+ */
+public class ElasticMetadataCache {
+
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private static final String VERSION_KEY = "version";
+
+    private static final long MAX_ENTRIES = 1000;
+
+    private final Cache<String,Map<String,Mapping>> mappings;
+
+    private final Cache<String,Set<String>> aliases;
+
+    private final Cache<String,Double> version;
+
+    public ElasticMetadataCache() {
+        this(DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param ttl Time to live of mappings and aliases, or zero to disable
+     * caching
+     * @param unit Time unit
+     */
+    public ElasticMetadataCache(long ttl, TimeUnit unit) {
+        this.mappings = createCache(ttl, unit);
+        this.aliases = createCache(ttl, unit);
+        this.version = CacheBuilder.newBuilder().maximumSize(1).recordStats().build();
+    }
+
+    private static <V> Cache<String,V> createCache(long ttl, TimeUnit unit) {
+        final CacheBuilder<Object,Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (ttl > 0) {
+            builder.maximumSize(MAX_ENTRIES).expireAfterWrite(ttl, unit);
+        } else {
+            builder.maximumSize(0);
+        }
+        return builder.build();
+    }
+
+    public Map<String,Mapping> getMappings(String indexName, String type, Callable<Map<String,Mapping>> loader)
+            throws IOException {
+        final String key = mappingKey(indexName, type);
+        final Map<String,Mapping> values = get(mappings, key, loader);
+        if (values.isEmpty()) {
+            // index may not exist yet
+            mappings.invalidate(key);
+        }
+        return values;
+    }
+
+    public Map<String,Mapping> getMappingsIfPresent(String indexName, String type) {
+        return mappings.getIfPresent(mappingKey(indexName, type));
+    }
+
+    public void putMappings(String indexName, String type, Map<String,Mapping> values) {
+        if (!values.isEmpty()) {
+            mappings.put(mappingKey(indexName, type), values);
+        }
+    }
+
+    public Set<String> getIndices(String alias, Callable<Set<String>> loader) throws IOException {
+        return get(aliases, alias, loader);
+    }
+
+    public double getVersion(Callable<Double> loader) throws IOException {
+        return get(version, VERSION_KEY, loader);
+    }
+
+    /**
+     * Invalidate cached mappings and alias resolution for an index or alias.
+     *
+     * @param indexName Index or alias name
+     */
+    public void invalidate(String indexName) {
+        final String prefix = mappingKey(indexName, null);
+        mappings.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        aliases.invalidate(indexName);
+    }
+
+    /**
+     * Invalidate all cached metadata including the server version.
+     */
+    public void invalidateAll() {
+        mappings.invalidateAll();
+        aliases.invalidateAll();
+        version.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return mappings.stats().plus(aliases.stats()).plus(version.stats());
+    }
+
+    public long getHitCount() {
+        return getStats().hitCount();
+    }
+
+    public long getMissCount() {
+        return getStats().missCount();
+    }
+
+    private static String mappingKey(String indexName, String type) {
+        return indexName + "/" + (type != null ? type : "");
+    }
+
+    private static <V> V get(Cache<String,V> cache, String key, Callable<V> loader) throws IOException {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Request, parsing and decoding metrics of a datastore or layer, optionally
+ * registered as a platform MBean.
+ *
+ */
+public class ElasticMetrics implements ElasticMetricsMBean {
+
+    // times are recorded in nanoseconds so short decodes aren't truncated,
+    // and converted to microseconds when read
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticMetrics.class);
+
+    public static final String DOMAIN = "mil.nga.giat.data.elasticsearch";
+
+    private final ElasticHistogram requestLatency;
+
+    private final LongAdder requestErrors;
+
+    private final LongAdder responseBytes;
+
+    private final ElasticHistogram parseTime;
+
+    private final LongAdder queries;
+
+    private final LongAdder postFilteredQueries;
+
+    private final ElasticHistogram decodeTime;
+
+    private final LongAdder scrollPages;
+
+    private final LongAdder cacheHits;
+
+    private final LongAdder cacheMisses;
+
+    private ObjectName objectName;
+
+    public ElasticMetrics() {
+        this.requestLatency = new ElasticHistogram();
+        this.requestErrors = new LongAdder();
+        this.responseBytes = new LongAdder();
+        this.parseTime = new ElasticHistogram();
+        this.queries = new LongAdder();
+        this.postFilteredQueries = new LongAdder();
+        this.decodeTime = new ElasticHistogram();
+        this.scrollPages = new LongAdder();
+        this.cacheHits = new LongAdder();
+        this.cacheMisses = new LongAdder();
+    }
+
+    /**
+     * Register with the platform MBean server. Failures are logged, the
+     * metrics are still recorded.
+     */
+    public synchronized void register(ObjectName objectName) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to register metrics MBean " + objectName, e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Unable to unregister metrics MBean " + objectName, e);
+            }
+            objectName = null;
+        }
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * @param nanos Request latency in nanoseconds
+     */
+    public void recordRequest(long nanos, boolean error) {
+        requestLatency.record(nanos);
+        if (error) {
+            requestErrors.increment();
+        }
+    }
+
+    public void recordResponseBytes(long bytes) {
+        responseBytes.add(bytes);
+    }
+
+    /**
+     * @param nanos Response parse time in nanoseconds
+     */
+    public void recordParse(long nanos) {
+        parseTime.record(nanos);
+    }
+
+    public void recordQuery(boolean postFiltered) {
+        queries.increment();
+        if (postFiltered) {
+            postFilteredQueries.increment();
+        }
+    }
+
+    /**
+     * @param nanos Feature decode time in nanoseconds
+     */
+    public void recordDecode(long nanos) {
+        decodeTime.record(nanos);
+    }
+
+    public void recordScrollPage() {
+        scrollPages.increment();
+    }
+
+    public void recordCacheLookup(boolean hit) {
+        if (hit) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestLatency.getCount();
+    }
+
+    @Override
+    public long getRequestErrorCount() {
+        return requestErrors.sum();
+    }
+
+    @Override
+    public double getRequestLatencyMean() {
+        return toMicros(requestLatency.getMean());
+    }
+
+    @Override
+    public long getRequestLatency50thPercentile() {
+        return TimeUnit.NANOSECONDS.toMicros(requestLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getRequestLatency95thPercentile() {
+        return TimeUnit.NANOSECONDS.toMicros(requestLatency.getPercentile(95));
+    }
+
+    @Override
+    public long getRequestLatency99thPercentile() {
+        return TimeUnit.NANOSECONDS.toMicros(requestLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getRequestLatencyMax() {
+        return TimeUnit.NANOSECONDS.toMicros(requestLatency.getMax());
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public double getParseTimeMean() {
+        return toMicros(parseTime.getMean());
+    }
+
+    @Override
+    public long getParseTime99thPercentile() {
+        return TimeUnit.NANOSECONDS.toMicros(parseTime.getPercentile(99));
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getPostFilteredQueryCount() {
+        return postFilteredQueries.sum();
+    }
+
+    @Override
+    public double getPostFilteredRatio() {
+        final long total = queries.sum();
+        return total > 0 ? (double) postFilteredQueries.sum() / total : 0;
+    }
+
+    @Override
+    public long getDecodeCount() {
+        return decodeTime.getCount();
+    }
+
+    @Override
+    public double getDecodeTimeMean() {
+        return toMicros(decodeTime.getMean());
+    }
+
+    @Override
+    public long getDecodeTime99thPercentile() {
+        return TimeUnit.NANOSECONDS.toMicros(decodeTime.getPercentile(99));
+    }
+
+    @Override
+    public long getScrollPageCount() {
+        return scrollPages.sum();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        final long hits = cacheHits.sum();
+        final long total = hits + cacheMisses.sum();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public void reset() {
+        requestLatency.reset();
+        requestErrors.reset();
+        responseBytes.reset();
+        parseTime.reset();
+        queries.reset();
+        postFilteredQueries.reset();
+        decodeTime.reset();
+        scrollPages.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+}
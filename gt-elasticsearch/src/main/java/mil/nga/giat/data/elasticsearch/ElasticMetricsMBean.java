@@ -0,0 +1,77 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+/**
+ * JMX view of {@link ElasticMetrics}. Request attributes of a datastore
+ * describe HTTP requests sent to the cluster. Request attributes of a layer
+ * describe searches executed for the layer, including time spent waiting on
+ * the result cache. Times are in microseconds.
+ *
+ */
+public interface ElasticMetricsMBean {
+
+    long getRequestCount();
+
+    long getRequestErrorCount();
+
+    /**
+     * @return Mean request latency in microseconds
+     */
+    double getRequestLatencyMean();
+
+    long getRequestLatency50thPercentile();
+
+    long getRequestLatency95thPercentile();
+
+    long getRequestLatency99thPercentile();
+
+    long getRequestLatencyMax();
+
+    /**
+     * @return Bytes of response content received, before decompression
+     */
+    long getResponseBytes();
+
+    /**
+     * @return Mean time spent parsing a response in microseconds
+     */
+    double getParseTimeMean();
+
+    long getParseTime99thPercentile();
+
+    long getQueryCount();
+
+    /**
+     * @return Number of queries with a filter that isn't fully supported by
+     * Elasticsearch and is applied to the features read
+     */
+    long getPostFilteredQueryCount();
+
+    double getPostFilteredRatio();
+
+    /**
+     * @return Number of features decoded
+     */
+    long getDecodeCount();
+
+    /**
+     * @return Mean time spent decoding a feature in microseconds
+     */
+    double getDecodeTimeMean();
+
+    long getDecodeTime99thPercentile();
+
+    long getScrollPageCount();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    double getCacheHitRate();
+
+    void reset();
+
+}
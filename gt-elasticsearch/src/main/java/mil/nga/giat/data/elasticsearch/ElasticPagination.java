@@ -0,0 +1,312 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Executes paged searches choosing between from/size, search_after and
+ * scroll based on the requested offset. Requests are sorted with a unique
+ * tiebreaker so that the sort values of the last hit of a page can be cached
+ * as a cursor, keyed on the query signature and the offset of the following
+ * page. A request for that page then continues with search_after instead of
+ * having the cluster collect and discard all preceding hits.
+ * <p>
+ * The tiebreaker defaults to the document id, which is sorted using
+ * fielddata. A unique keyword field with doc values can be configured
+ * instead.
+ *
+ */
+public class ElasticPagination {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticPagination.class);
+
+    public enum Mode {
+
+        /**
+         * Standard from/size paging.
+         */
+        FROM_SIZE,
+
+        /**
+         * Continue from a cached cursor using search_after.
+         */
+        SEARCH_AFTER,
+
+        /**
+         * Sorted scroll reading the sort values of the hits up to the offset,
+         * then search_after for the page. Used past the maximum result window
+         * when no cursor is available.
+         */
+        SCROLL
+
+    }
+
+    private static final long DEFAULT_MAX_CURSORS = 10000;
+
+    private static final long DEFAULT_EXPIRE_MINUTES = 10;
+
+    private static final int DEFAULT_SCROLL_TIME = 60;
+
+    private final Cache<String,List<Object>> cursors;
+
+    private final ObjectMapper mapper;
+
+    private volatile String tiebreaker;
+
+    public ElasticPagination() {
+        this(DEFAULT_MAX_CURSORS, DEFAULT_EXPIRE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public ElasticPagination(long maxCursors, long expireAfterAccess, TimeUnit timeUnit) {
+        this.cursors = CacheBuilder.newBuilder()
+                .maximumSize(maxCursors)
+                .expireAfterAccess(expireAfterAccess, timeUnit)
+                .build();
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    }
+
+    /**
+     * Execute search for the page defined by the request from and size.
+     *
+     * @param client Client
+     * @param searchIndices Indices
+     * @param type Document type
+     * @param searchRequest Search request with from and size set, not modified
+     * @param maxResultWindow Maximum from+size supported by the index
+     * @param scrollTime Scroll time in seconds used when paging past the
+     * result window, or null for the default
+     * @return Search response for the requested page
+     * @throws IOException
+     */
+    public ElasticResponse search(ElasticClient client, String searchIndices, String type,
+            ElasticRequest searchRequest, int maxResultWindow, Integer scrollTime) throws IOException {
+
+        final int from = searchRequest.getFrom() != null ? searchRequest.getFrom() : 0;
+        final int size = searchRequest.getSize() != null ? searchRequest.getSize() : 0;
+
+        final ElasticRequest request = new ElasticRequest(searchRequest);
+        addTiebreaker(request, client.getVersion());
+        final String signature = getSignature(searchIndices, type, request);
+
+        final List<Object> cursor = from > 0 ? cursors.getIfPresent(cursorKey(signature, from)) : null;
+        final Mode mode = selectMode(from, size, maxResultWindow, cursor != null);
+        LOGGER.fine("Paging from=" + from + ", size=" + size + " using " + mode);
+
+        final ElasticResponse response;
+        switch (mode) {
+        case SEARCH_AFTER: {
+            final ElasticRequest searchAfterRequest = new ElasticRequest(request);
+            searchAfterRequest.setFrom(null);
+            searchAfterRequest.setSearchAfter(cursor);
+            response = client.search(searchIndices, type, searchAfterRequest);
+            break;
+        }
+        case SCROLL:
+            response = scroll(client, searchIndices, type, request, signature, from, size, maxResultWindow,
+                    scrollTime != null ? scrollTime : DEFAULT_SCROLL_TIME);
+            break;
+        default:
+            response = client.search(searchIndices, type, request);
+        }
+
+        final List<ElasticHit> hits = response.getHits();
+        if (size > 0 && hits.size() == size) {
+            putCursor(signature, from + size, hits.get(hits.size() - 1));
+        }
+        return response;
+    }
+
+    static Mode selectMode(int from, int size, int maxResultWindow, boolean cursorAvailable) {
+        final Mode mode;
+        if (cursorAvailable) {
+            mode = Mode.SEARCH_AFTER;
+        } else if (from + size <= maxResultWindow) {
+            mode = Mode.FROM_SIZE;
+        } else {
+            mode = Mode.SCROLL;
+        }
+        return mode;
+    }
+
+    private ElasticResponse scroll(ElasticClient client, String searchIndices, String type, ElasticRequest request,
+            String signature, int from, int size, int maxResultWindow, int scrollTime) throws IOException {
+
+        final int pageSize = Math.max(1, maxResultWindow);
+        List<Object> cursor = null;
+        ElasticResponse first = null;
+        if (from > 0) {
+            final ElasticRequest skipRequest = new ElasticRequest(request);
+            skipRequest.setFrom(null);
+            skipRequest.setSize(Math.min(from, pageSize));
+            skipRequest.setScroll(scrollTime);
+            skipRequest.setAggregations(null);
+            // only the sort values of the skipped hits are read
+            skipRequest.setSourceEnabled(false);
+            skipRequest.getSourceIncludes().clear();
+            skipRequest.getDocValueFields().clear();
+            skipRequest.getFields().clear();
+            if (client.getVersion() >= 5) {
+                skipRequest.addField("_none_");
+            }
+            first = client.search(searchIndices, type, skipRequest);
+            cursor = skip(client, first, from, scrollTime);
+            if (cursor == null) {
+                // offset past the last hit
+                return createResponse(first, new ArrayList<>());
+            }
+            cursors.put(cursorKey(signature, from), cursor);
+        }
+
+        final List<ElasticHit> hits = new ArrayList<>(Math.min(size, pageSize));
+        while (hits.size() < size) {
+            final int remaining = size - hits.size();
+            final ElasticRequest pageRequest = new ElasticRequest(request);
+            pageRequest.setFrom(null);
+            pageRequest.setSize(Math.min(remaining, pageSize));
+            pageRequest.setSearchAfter(cursor);
+            final ElasticResponse response = client.search(searchIndices, type, pageRequest);
+            if (first == null) {
+                first = response;
+            }
+            final List<ElasticHit> page = response.getHits();
+            hits.addAll(page);
+            if (page.size() < pageRequest.getSize() || page.get(page.size() - 1).getSort() == null) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getSort();
+        }
+        return createResponse(first, hits);
+    }
+
+    /**
+     * Scroll through the hits up to the offset.
+     *
+     * @return Sort values of the hit before the offset, or null if there are
+     * fewer hits
+     */
+    private List<Object> skip(ElasticClient client, ElasticResponse first, int from, int scrollTime)
+            throws IOException {
+
+        final Set<String> scrollIds = new HashSet<>();
+        try {
+            ElasticResponse response = first;
+            long skipped = 0;
+            while (true) {
+                if (response.getScrollId() != null) {
+                    scrollIds.add(response.getScrollId());
+                }
+                final List<ElasticHit> page = response.getHits();
+                if (page.isEmpty()) {
+                    return null;
+                }
+                if (skipped + page.size() >= from) {
+                    return page.get((int) (from - skipped - 1)).getSort();
+                }
+                skipped += page.size();
+                if (response.getScrollId() == null) {
+                    return null;
+                }
+                response = client.scroll(response.getScrollId(), scrollTime);
+            }
+        } finally {
+            client.clearScroll(scrollIds);
+        }
+    }
+
+    private static ElasticResponse createResponse(ElasticResponse first, List<ElasticHit> hits) {
+        final ElasticResults results = new ElasticResults();
+        results.setTotal(first.getTotalNumHits());
+        results.setMaxScore(first.getMaxScore());
+        results.setHits(hits);
+        final ElasticResponse response = new ElasticResponse();
+        response.setResults(results);
+        return response;
+    }
+
+    private void putCursor(String signature, int offset, ElasticHit hit) {
+        if (hit.getSort() != null && !hit.getSort().isEmpty()) {
+            cursors.put(cursorKey(signature, offset), hit.getSort());
+        }
+    }
+
+    /**
+     * Ensure the sort ends in a unique field so that search_after cursors are
+     * unambiguous.
+     */
+    private void addTiebreaker(ElasticRequest request, double version) {
+        final String configured = this.tiebreaker;
+        final String tiebreaker;
+        if (configured != null) {
+            tiebreaker = configured;
+        } else {
+            tiebreaker = version >= 6 ? "_id" : "_uid";
+        }
+        final boolean present = request.getSorts().stream()
+                .anyMatch(sort -> sort.containsKey(tiebreaker) || sort.containsKey("_id") || sort.containsKey("_uid"));
+        if (!present) {
+            request.addSort(tiebreaker, "asc");
+        }
+    }
+
+    public String getTiebreaker() {
+        return tiebreaker;
+    }
+
+    /**
+     * @param tiebreaker Unique field ending the sort of paged requests, or
+     * null for the document id. A keyword field with doc values avoids
+     * loading the document id fielddata.
+     */
+    public void setTiebreaker(String tiebreaker) {
+        this.tiebreaker = tiebreaker != null && !tiebreaker.trim().isEmpty() ? tiebreaker.trim() : null;
+        cursors.invalidateAll();
+    }
+
+    private String getSignature(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final Map<String,Object> values = new HashMap<>();
+        values.put("index", searchIndices);
+        values.put("type", type);
+        values.put("query", request.getQuery());
+        values.put("sort", request.getSorts());
+        values.put("source", request.getSourceIncludes());
+        values.put("fields", request.getFields());
+        try {
+            return mapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IOException("Unable to create query signature", e);
+        }
+    }
+
+    private static String cursorKey(String signature, int offset) {
+        return offset + ":" + signature;
+    }
+
+    public long getCursorCount() {
+        return cursors.size();
+    }
+
+    public void invalidate() {
+        cursors.invalidateAll();
+    }
+
+}
@@ -15,17 +15,16 @@ import java.util.regex.Pattern;
 
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Polygon;
-import org.locationtech.jts.io.ParseException;
-import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 
-import com.github.davidmoten.geo.GeoHash;
-import com.github.davidmoten.geo.LatLong;
 import java.awt.geom.Point2D;
 import org.geotools.referencing.GeodeticCalculator;
 import org.geotools.referencing.datum.DefaultEllipsoid;
@@ -39,16 +38,16 @@ public class ElasticParserUtil {
 
     private final static Logger LOGGER = Logging.getLogger(ElasticParserUtil.class);
 
-    private static final Pattern GEO_POINT_PATTERN;
-
-    static {
-        GEO_POINT_PATTERN = Pattern.compile("\\s*([-+]?\\d*\\.?\\d*)[^-+\\d\\.]+([-+]?\\d*\\.?\\d*)\\s*");
-    }
-
-    private static final Pattern GEO_HASH_PATTERN;
+    /**
+     * Powers of ten exactly representable as doubles
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
 
     static {
-        GEO_HASH_PATTERN = Pattern.compile("[0123456789bcdefghjkmnpqrstuvwxyz]+");
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
     }
 
     private static final Pattern ELASTIC_DISTANCE_PATTERN;
@@ -64,22 +63,33 @@ public class ElasticParserUtil {
 
     private final GeodeticCalculator geodeticCalculator;
 
-    private static final Pattern WKT_PATTERN;
-    static {
-        WKT_PATTERN = Pattern.compile("POINT.*|LINESTRING.*|POLYGON.*|MULTIPOINT.*|MULTILINESTRING.*|MULTIPOLYGON.*|GEOMETRYCOLLECTION.*");
-    }
-
     private final GeometryFactory geometryFactory;
 
-    private final WKTReader wktReader;
+    private final CoordinateSequenceFactory coordinateSequenceFactory;
+
+    private final ElasticWktParser wktParser;
+
+    private ElasticGeometryCache geometryCache;
 
     private boolean unsupportedEncodingMessage;
 
     public ElasticParserUtil() {
-        this.geometryFactory = new GeometryFactory();
+        this(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+    }
+
+    /**
+     * @param coordinateSequenceFactory Factory of the coordinate sequences of
+     * created geometries. Coordinates of geo_shape properties are read
+     * directly into sequences created with
+     * {@link CoordinateSequenceFactory#create(double[], int)} when it is a
+     * {@link PackedCoordinateSequenceFactory}.
+     */
+    public ElasticParserUtil(CoordinateSequenceFactory coordinateSequenceFactory) {
+        this.coordinateSequenceFactory = coordinateSequenceFactory;
+        this.geometryFactory = new GeometryFactory(coordinateSequenceFactory);
         this.unsupportedEncodingMessage = false;
         this.geodeticCalculator = new GeodeticCalculator(DefaultEllipsoid.WGS84);
-        this.wktReader = new WKTReader();
+        this.wktParser = new ElasticWktParser(geometryFactory);
     }
 
     /**
@@ -90,33 +100,25 @@ public class ElasticParserUtil {
      * @param obj GeoPoint or GeoShape definition
      * @return Geometry
      */
-    @SuppressWarnings("unchecked")
     public Geometry createGeometry(Object obj) {
+        if (geometryCache != null && ElasticGeometryCache.isCacheable(obj)) {
+            return geometryCache.get(obj, this::decodeGeometry);
+        }
+        return decodeGeometry(obj);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Geometry decodeGeometry(Object obj) {
         final Geometry geometry;
         if (obj instanceof String) {
-            // geo_point by string
-            final Matcher listMatcher = GEO_POINT_PATTERN.matcher((String) obj);
-            if (listMatcher.matches()) {
-                // coordinate
-                final double y = Double.valueOf(listMatcher.group(1));
-                final double x = Double.valueOf(listMatcher.group(2));
-                geometry = geometryFactory.createPoint(new Coordinate(x, y));
-            } else if (GEO_HASH_PATTERN.matcher((String) obj).matches()) {
-                // geohash
-                final LatLong latLon = GeoHash.decodeHash((String) obj);
-                final Coordinate geoPoint = new Coordinate(latLon.getLon(), latLon.getLat());
-                final double lat = geoPoint.y;
-                final double lon = geoPoint.x;
-                geometry = geometryFactory.createPoint(new Coordinate(lon, lat));
-            } else if (WKT_PATTERN.matcher((String) obj).matches()) {
+            final String value = (String) obj;
+            final double[] coordinates = new double[2];
+            if (parseGeoPoint(value, coordinates) || GeohashUtil.decode(value, coordinates)) {
+                // geo_point by coordinate string or geohash
+                geometry = geometryFactory.createPoint(new Coordinate(coordinates[0], coordinates[1]));
+            } else if (ElasticWktParser.isWkt(value)) {
                 // geoshape wkt
-                Geometry geom;
-                try {
-                    geom = wktReader.read((String) obj);
-                } catch (ParseException e) {
-                    geom = null;
-                }
-                geometry = geom;
+                geometry = wktParser.read(value);
             } else {
                 geometry = null;
             }
@@ -143,6 +145,183 @@ public class ElasticParserUtil {
         return geometry;
     }
 
+    /**
+     * Read the coordinates of a geo_point without creating a geometry.
+     * Supports the string, geohash, coordinate array and lat/lon properties
+     * formats.
+     *
+     * @param obj GeoPoint definition
+     * @param coordinates Array receiving the longitude and latitude
+     * @return Whether the coordinates were read
+     */
+    public boolean readGeoPoint(Object obj, double[] coordinates) {
+        try {
+            if (obj instanceof String) {
+                return parseGeoPoint((String) obj, coordinates) || GeohashUtil.decode((String) obj, coordinates);
+            } else if (obj instanceof List && ((List<?>) obj).size() == 2) {
+                final List<?> values = (List<?>) obj;
+                if (values.get(0) instanceof Number && values.get(1) instanceof Number) {
+                    coordinates[0] = ((Number) values.get(0)).doubleValue();
+                    coordinates[1] = ((Number) values.get(1)).doubleValue();
+                    return true;
+                }
+            } else if (obj instanceof Map && !((Map<?, ?>) obj).containsKey("type")) {
+                final Object lat = ((Map<?, ?>) obj).get("lat");
+                final Object lon = ((Map<?, ?>) obj).get("lon");
+                if (lat instanceof Number && lon instanceof Number) {
+                    coordinates[0] = ((Number) lon).doubleValue();
+                    coordinates[1] = ((Number) lat).doubleValue();
+                    return true;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // not a valid geo_point
+        }
+        return false;
+    }
+
+    public ElasticGeometryCache getGeometryCache() {
+        return geometryCache;
+    }
+
+    /**
+     * @param geometryCache Cache of geometries created from geo_shape values,
+     * or null to decode every value
+     */
+    public void setGeometryCache(ElasticGeometryCache geometryCache) {
+        this.geometryCache = geometryCache;
+    }
+
+    /**
+     * Parse a "lat,lon" geo_point string. Latitude and longitude are decimal
+     * numbers separated by any characters other than digits, signs and
+     * dots.
+     *
+     * @param value Geo point string
+     * @param coordinates Array receiving the longitude and latitude
+     * @return Whether the string is a geo_point
+     */
+    public static boolean parseGeoPoint(String value, double[] coordinates) {
+        final int length = value.length();
+        int i = 0;
+        while (i < length && Character.isWhitespace(value.charAt(i))) {
+            i++;
+        }
+        final int latStart = i;
+        final int latEnd = scanNumber(value, latStart, false);
+        if (latEnd == latStart) {
+            return false;
+        }
+        i = latEnd;
+        while (i < length && !isNumberChar(value.charAt(i))) {
+            i++;
+        }
+        if (i == latEnd) {
+            return false;
+        }
+        final int lonStart = i;
+        final int lonEnd = scanNumber(value, lonStart, false);
+        if (lonEnd == lonStart) {
+            return false;
+        }
+        i = lonEnd;
+        while (i < length && Character.isWhitespace(value.charAt(i))) {
+            i++;
+        }
+        if (i != length) {
+            return false;
+        }
+        coordinates[0] = parseNumber(value, lonStart, lonEnd);
+        coordinates[1] = parseNumber(value, latStart, latEnd);
+        return true;
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Scan a decimal number with an optional sign.
+     *
+     * @param exponent Whether an exponent is accepted
+     * @return End of the number, or start if there is no number at start
+     */
+    static int scanNumber(String value, int start, boolean exponent) {
+        final int length = value.length();
+        int i = start;
+        if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+            digits++;
+        }
+        if (i < length && value.charAt(i) == '.') {
+            i++;
+            while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return start;
+        }
+        if (exponent && i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < length && (value.charAt(j) == '-' || value.charAt(j) == '+')) {
+                j++;
+            }
+            final int exponentStart = j;
+            while (j < length && value.charAt(j) >= '0' && value.charAt(j) <= '9') {
+                j++;
+            }
+            if (j > exponentStart) {
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Parse a number previously scanned with
+     * {@link #scanNumber(String, int, boolean)}. Numbers with at most 15
+     * significant digits and no exponent are computed exactly without
+     * allocation, others are parsed with {@link Double#parseDouble(String)}.
+     */
+    static double parseNumber(String value, int start, int end) {
+        int i = start;
+        final boolean negative = value.charAt(i) == '-';
+        if (negative || value.charAt(i) == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                if (mantissa > 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits > 15 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(value.substring(start, end));
+        }
+        final double result = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -result : result;
+    }
+
     /**
      * Create geometry given property map defining geo_shape type and
      * coordinates or geo_point lat and lon.
@@ -157,15 +336,13 @@ public class ElasticParserUtil {
         case "POINT": {
             final List posList;
             posList = (List) properties.get("coordinates");
-            final Coordinate coordinate = createCoordinate(posList);
-            geometry = geometryFactory.createPoint(coordinate);
+            geometry = geometryFactory.createPoint(createCoordinateSequence(Collections.singletonList(posList)));
             break;
         }
         case "LINESTRING": {
             final List<List<Object>> posList;
             posList = (List) properties.get("coordinates");
-            final Coordinate[] coordinates = createCoordinates(posList);
-            geometry = geometryFactory.createLineString(coordinates);
+            geometry = geometryFactory.createLineString(createCoordinateSequence(posList));
             break;
         }
         case "POLYGON": {
@@ -177,8 +354,7 @@ public class ElasticParserUtil {
         case "MULTIPOINT": {
             final List<List<Object>> posList;
             posList = (List) properties.get("coordinates");
-            final Coordinate[] coordinates = createCoordinates(posList);
-            geometry = geometryFactory.createMultiPoint(coordinates);
+            geometry = geometryFactory.createMultiPoint(createCoordinateSequence(posList));
             break;
         }
         case "MULTILINESTRING": {
@@ -186,8 +362,7 @@ public class ElasticParserUtil {
             posList = (List) properties.get("coordinates");
             final LineString[] lineStrings = new LineString[posList.size()];
             for (int i = 0; i < posList.size(); i++) {
-                final Coordinate[] coordinates = createCoordinates(posList.get(i));
-                lineStrings[i] = geometryFactory.createLineString(coordinates);
+                lineStrings[i] = geometryFactory.createLineString(createCoordinateSequence(posList.get(i)));
             }
             geometry = geometryFactory.createMultiLineString(lineStrings);
             break;
@@ -265,17 +440,40 @@ public class ElasticParserUtil {
     }
 
     private Polygon createPolygon(final List<List<List<Object>>> posList) {
-        final Coordinate[] shellCoordinates = createCoordinates(posList.get(0));
-        final LinearRing shell = geometryFactory.createLinearRing(shellCoordinates);
+        final LinearRing shell = geometryFactory.createLinearRing(createCoordinateSequence(posList.get(0)));
         final LinearRing[] holes = new LinearRing[posList.size() - 1];
         for (int i = 1; i < posList.size(); i++) {
-            final Coordinate[] coordinates = createCoordinates(posList.get(i));
-            holes[i - 1] = geometryFactory.createLinearRing(coordinates);
+            holes[i - 1] = geometryFactory.createLinearRing(createCoordinateSequence(posList.get(i)));
         }
         return geometryFactory.createPolygon(shell, holes);
     }
 
-    private Coordinate[] createCoordinates(final List<List<Object>> posList) {
+    /**
+     * Read positions into a coordinate sequence without creating a
+     * coordinate per position. Positions are read into a packed array of x/y
+     * ordinates handed to the coordinate sequence factory.
+     */
+    private CoordinateSequence createCoordinateSequence(final List<? extends List<?>> posList) {
+        if (!(coordinateSequenceFactory instanceof PackedCoordinateSequenceFactory)) {
+            return coordinateSequenceFactory.create(createCoordinates(posList));
+        }
+        final double[] packed = new double[posList.size() * 2];
+        int i = 0;
+        for (final List<?> position : posList) {
+            packed[i++] = toDouble(position.get(0));
+            packed[i++] = toDouble(position.get(1));
+        }
+        return ((PackedCoordinateSequenceFactory) coordinateSequenceFactory).create(packed, 2);
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.valueOf(value.toString());
+    }
+
+    private Coordinate[] createCoordinates(final List<? extends List<?>> posList) {
         final Coordinate[] coordinates = new Coordinate[posList.size()];
         for (int i = 0; i < posList.size(); i++) {
             coordinates[i] = createCoordinate(posList.get(i));
@@ -283,17 +481,8 @@ public class ElasticParserUtil {
         return coordinates;
     }
 
-    private Coordinate createCoordinate(final List<Object> posList) {
-        final double x;
-        final double y;
-        if (Number.class.isAssignableFrom(posList.get(0).getClass())) {
-            x = ((Number) posList.get(0)).doubleValue();
-            y = ((Number) posList.get(1)).doubleValue();
-        } else {
-            x = Double.valueOf(posList.get(0).toString());
-            y = Double.valueOf(posList.get(1).toString());
-        }
-        return new Coordinate(x, y);
+    private Coordinate createCoordinate(final List<?> posList) {
+        return new Coordinate(toDouble(posList.get(0)), toDouble(posList.get(1)));
     }
 
     /**
@@ -304,7 +493,18 @@ public class ElasticParserUtil {
      * @return List of values or empty list if not found
      */
     public List<Object> readField(Map<String, Object> source, String name) {
-        final List<String> keys = Arrays.asList(name.split("\\."));
+        return readField(source, name, Arrays.asList(name.split("\\.")));
+    }
+
+    /**
+     * Read field from document source.
+     *
+     * @param source Source
+     * @param name Field to extract.
+     * @param keys Field name split on dots
+     * @return List of values or null if not found
+     */
+    public List<Object> readField(Map<String, Object> source, String name, List<String> keys) {
         List<Object> values = new ArrayList<>();
         if (!keys.isEmpty()) {
 
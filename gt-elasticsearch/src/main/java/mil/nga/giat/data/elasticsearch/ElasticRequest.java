@@ -6,8 +6,11 @@ package mil.nga.giat.data.elasticsearch;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ElasticRequest {
 
@@ -27,10 +30,50 @@ public class ElasticRequest {
 
     private List<String> fields;
 
+    private Map<String,String> docValueFields;
+
+    private Integer sliceId;
+
+    private Integer sliceMax;
+
+    private List<Object> searchAfter;
+
+    private Set<String> hitMetadata;
+
+    private Boolean trackTotalHits;
+
+    private Boolean sourceEnabled;
+
+    private ElasticTrace trace;
+
+    private boolean filterFullySupported;
+
     public ElasticRequest() {
         this.sorts = new ArrayList<>();
         this.fields = new ArrayList<>();
+        this.docValueFields = new LinkedHashMap<>();
         this.sourceIncludes = new ArrayList<>();
+        this.filterFullySupported = true;
+    }
+
+    public ElasticRequest(ElasticRequest other) {
+        this.query = other.query;
+        this.aggregations = other.aggregations;
+        this.size = other.size;
+        this.from = other.from;
+        this.scroll = other.scroll;
+        this.sorts = new ArrayList<>(other.sorts);
+        this.fields = new ArrayList<>(other.fields);
+        this.docValueFields = new LinkedHashMap<>(other.docValueFields);
+        this.sourceIncludes = new ArrayList<>(other.sourceIncludes);
+        this.sliceId = other.sliceId;
+        this.sliceMax = other.sliceMax;
+        this.searchAfter = other.searchAfter;
+        this.hitMetadata = other.hitMetadata != null ? new HashSet<>(other.hitMetadata) : null;
+        this.trackTotalHits = other.trackTotalHits;
+        this.sourceEnabled = other.sourceEnabled;
+        this.trace = other.trace;
+        this.filterFullySupported = other.filterFullySupported;
     }
 
     public Map<String,Object> getQuery() {
@@ -97,4 +140,102 @@ public class ElasticRequest {
         this.fields.add(field);
     }
 
+    /**
+     * @return Doc value fields and their format (null for the default
+     * format)
+     */
+    public Map<String,String> getDocValueFields() {
+        return docValueFields;
+    }
+
+    public void addDocValueField(String field, String format) {
+        this.docValueFields.put(field, format);
+    }
+
+    public Integer getSliceId() {
+        return sliceId;
+    }
+
+    public Integer getSliceMax() {
+        return sliceMax;
+    }
+
+    public void setSlice(Integer sliceId, Integer sliceMax) {
+        this.sliceId = sliceId;
+        this.sliceMax = sliceMax;
+    }
+
+    public List<Object> getSearchAfter() {
+        return searchAfter;
+    }
+
+    public void setSearchAfter(List<Object> searchAfter) {
+        this.searchAfter = searchAfter;
+    }
+
+    public Set<String> getHitMetadata() {
+        return hitMetadata;
+    }
+
+    /**
+     * Limit the response to the fields read by the feature reader.
+     *
+     * @param hitMetadata Hit metadata fields (e.g. _index, _score) to return
+     * in addition to the document id, source, fields and sort values, or null
+     * to return the full response
+     */
+    public void setHitMetadata(Set<String> hitMetadata) {
+        this.hitMetadata = hitMetadata;
+    }
+
+    public Boolean getTrackTotalHits() {
+        return trackTotalHits;
+    }
+
+    /**
+     * @param trackTotalHits Whether the exact number of hits is counted, or
+     * null for the cluster default. Not sent to clusters before 6.0 and must
+     * not be false for scroll requests.
+     */
+    public void setTrackTotalHits(Boolean trackTotalHits) {
+        this.trackTotalHits = trackTotalHits;
+    }
+
+    public Boolean getSourceEnabled() {
+        return sourceEnabled;
+    }
+
+    /**
+     * @param sourceEnabled False to return no document source regardless of
+     * the source includes, or null for the default
+     */
+    public void setSourceEnabled(Boolean sourceEnabled) {
+        this.sourceEnabled = sourceEnabled;
+    }
+
+    public ElasticTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace Trace recording the time spent serializing, sending and
+     * parsing searches of this request, or null
+     */
+    public void setTrace(ElasticTrace trace) {
+        this.trace = trace;
+    }
+
+    public boolean isFilterFullySupported() {
+        return filterFullySupported;
+    }
+
+    /**
+     * @param filterFullySupported False when the query filter was only
+     * partially encoded and hits must be filtered after the search. Not sent
+     * to Elasticsearch.
+     */
+    public void setFilterFullySupported(boolean filterFullySupported) {
+        this.filterFullySupported = filterFullySupported;
+    }
+
 }
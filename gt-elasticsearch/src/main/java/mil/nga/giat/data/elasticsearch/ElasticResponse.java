@@ -50,7 +50,7 @@ public class ElasticResponse {
     @JsonIgnore
     public List<ElasticHit> getHits() {
         final List<ElasticHit> hits;
-        if (results != null) {
+        if (results != null && results.getHits() != null) {
             hits = results.getHits();
         } else {
             hits = new ArrayList<>();
@@ -60,7 +60,7 @@ public class ElasticResponse {
 
     public int getNumHits() {
         final int numHits;
-        if (results != null) {
+        if (results != null && results.getHits() != null) {
             numHits = results.getHits().size();
         } else {
             numHits = 0;
@@ -0,0 +1,191 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Incremental reader over an Elasticsearch search response. Response metadata
+ * preceding the hits array (scroll id, total hits and max score) is read on
+ * construction and hits are then deserialized one at a time as they are
+ * consumed. Aggregations follow the hits in the response body and are only
+ * available after all hits have been read.
+ *
+ */
+public class ElasticResponseStream implements Iterator<ElasticHit>, Closeable {
+
+    private static final TypeReference<Map<String,ElasticAggregation>> AGGREGATIONS_TYPE;
+
+    static {
+        AGGREGATIONS_TYPE = new TypeReference<Map<String,ElasticAggregation>>() {};
+    }
+
+    private final ObjectMapper mapper;
+
+    private final JsonParser parser;
+
+    private Long total;
+
+    private Float maxScore;
+
+    private String scrollId;
+
+    private Map<String,ElasticAggregation> aggregations;
+
+    private ElasticHit nextHit;
+
+    private boolean withinResults;
+
+    private boolean withinHits;
+
+    private boolean closed;
+
+    public ElasticResponseStream(ObjectMapper mapper, InputStream inputStream) throws IOException {
+        this.mapper = mapper;
+        this.parser = mapper.getFactory().createParser(inputStream);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            close();
+            throw new IOException("Unexpected search response content");
+        }
+        readFields();
+    }
+
+    /**
+     * Read response fields up to the start of the next hit or the end of the
+     * response.
+     */
+    private void readFields() throws IOException {
+        JsonToken token;
+        while (!closed && (token = parser.nextToken()) != null) {
+            if (token == JsonToken.END_OBJECT) {
+                if (withinResults) {
+                    withinResults = false;
+                    continue;
+                }
+                break;
+            }
+
+            final String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if (withinResults) {
+                switch (name) {
+                case "total":
+                    total = ElasticResults.readTotal(parser);
+                    break;
+                case "max_score":
+                    maxScore = token == JsonToken.VALUE_NULL ? null : parser.getFloatValue();
+                    break;
+                case "hits":
+                    if (token == JsonToken.START_ARRAY) {
+                        withinHits = true;
+                        return;
+                    }
+                    parser.skipChildren();
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            } else {
+                switch (name) {
+                case "_scroll_id":
+                    scrollId = parser.getValueAsString();
+                    break;
+                case "hits":
+                    if (token == JsonToken.START_OBJECT) {
+                        withinResults = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "aggregations":
+                    aggregations = mapper.readValue(parser, AGGREGATIONS_TYPE);
+                    break;
+                default:
+                    parser.skipChildren();
+                }
+            }
+        }
+        close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextHit == null && withinHits) {
+            try {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    nextHit = mapper.readValue(parser, ElasticHit.class);
+                } else {
+                    withinHits = false;
+                    readFields();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading search response", e);
+            }
+        }
+        return nextHit != null;
+    }
+
+    @Override
+    public ElasticHit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final ElasticHit hit = nextHit;
+        nextHit = null;
+        return hit;
+    }
+
+    public long getTotalNumHits() {
+        return total != null ? total : 0l;
+    }
+
+    public float getMaxScore() {
+        return maxScore != null ? maxScore : 0f;
+    }
+
+    public String getScrollId() {
+        return scrollId;
+    }
+
+    /**
+     * Aggregations in the response. Only available after all hits have been
+     * consumed.
+     *
+     * @return Aggregations or null if not present or not yet read
+     */
+    public Map<String,ElasticAggregation> getAggregations() {
+        return aggregations;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            withinHits = false;
+            parser.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("ElasticResponseStream[total=")
+                .append(getTotalNumHits())
+                .append(", scrollId=").append(scrollId)
+                .append(", maxScore=").append(getMaxScore())
+                .append("]").toString();
+    }
+
+}
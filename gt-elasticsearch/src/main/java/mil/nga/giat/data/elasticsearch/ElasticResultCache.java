@@ -0,0 +1,211 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of parsed search responses keyed on the normalized search request.
+ * Entries are evicted least recently used once the estimated size of all
+ * cached responses exceeds the configured number of bytes, and expire a fixed
+ * time after they were loaded. Cached responses are shared between readers
+ * and must not be modified.
+ *
+ */
+public class ElasticResultCache {
+
+    private static final int OBJECT_OVERHEAD = 16;
+
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final ObjectWriter KEY_WRITER = new ObjectMapper().writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private final Cache<String,ElasticResponse> responses;
+
+    /**
+     * @param maxBytes Maximum estimated size of all cached responses
+     * @param ttl Time to live of cached responses
+     * @param unit Time unit
+     */
+    public ElasticResultCache(long maxBytes, long ttl, TimeUnit unit) {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, ElasticResponse response) -> weigh(key, response))
+                .expireAfterWrite(ttl, unit)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return the cached response for the request or execute the search.
+     * Scroll requests must not be cached.
+     */
+    public ElasticResponse search(ElasticClient client, String searchIndices, String type, ElasticRequest request)
+            throws IOException {
+        return search(client, searchIndices, type, request, null);
+    }
+
+    /**
+     * Return the cached response for the request or execute the search,
+     * recording the cache lookup.
+     *
+     * @param metrics Metrics recording the lookup, or null
+     */
+    public ElasticResponse search(ElasticClient client, String searchIndices, String type, ElasticRequest request,
+            ElasticMetrics metrics) throws IOException {
+        final String key = getKey(searchIndices, type, request);
+        final boolean[] loaded = new boolean[1];
+        try {
+            final ElasticResponse response = responses.get(key, () -> {
+                loaded[0] = true;
+                return client.search(searchIndices, type, request);
+            });
+            if (metrics != null) {
+                metrics.recordCacheLookup(!loaded[0]);
+            }
+            return response;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Return the cached response for the request or execute the search
+     * without blocking, caching its response. Concurrent misses of the same
+     * request each execute the search.
+     *
+     * @param metrics Metrics recording the lookup, or null
+     */
+    public CompletableFuture<ElasticResponse> searchAsync(ElasticClient client, String searchIndices, String type,
+            ElasticRequest request, ElasticMetrics metrics) {
+        final String key;
+        try {
+            key = getKey(searchIndices, type, request);
+        } catch (IOException e) {
+            final CompletableFuture<ElasticResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        final ElasticResponse cached = responses.getIfPresent(key);
+        if (metrics != null) {
+            metrics.recordCacheLookup(cached != null);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return client.searchAsync(searchIndices, type, request).thenApply(response -> {
+            responses.put(key, response);
+            return response;
+        });
+    }
+
+    static String getKey(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final Map<String,Object> values = new LinkedHashMap<>();
+        values.put("index", searchIndices);
+        values.put("type", type);
+        values.put("query", request.getQuery());
+        values.put("aggregations", request.getAggregations());
+        values.put("size", request.getSize());
+        values.put("from", request.getFrom());
+        values.put("sort", request.getSorts());
+        values.put("source", request.getSourceIncludes());
+        values.put("source_enabled", request.getSourceEnabled());
+        values.put("fields", request.getFields());
+        values.put("docvalue_fields", request.getDocValueFields());
+        values.put("search_after", request.getSearchAfter());
+        values.put("hit_metadata", request.getHitMetadata());
+        values.put("track_total_hits", request.getTrackTotalHits());
+        try {
+            return KEY_WRITER.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IOException("Unable to create cache key", e);
+        }
+    }
+
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    public long size() {
+        return responses.size();
+    }
+
+    public CacheStats getStats() {
+        return responses.stats();
+    }
+
+    public long getHitCount() {
+        return responses.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return responses.stats().missCount();
+    }
+
+    /**
+     * Approximate heap size of a cached response in bytes.
+     */
+    static int weigh(String key, ElasticResponse response) {
+        long size = ENTRY_OVERHEAD + estimate(key);
+        for (final ElasticHit hit : response.getHits()) {
+            size += ENTRY_OVERHEAD + estimate(hit.getId()) + estimate(hit.getIndex()) + estimate(hit.getType())
+                    + estimate(hit.getSource()) + estimate(hit.getFields()) + estimate(hit.getSort());
+        }
+        if (response.getAggregations() != null) {
+            for (final Map.Entry<String,ElasticAggregation> entry : response.getAggregations().entrySet()) {
+                size += ENTRY_OVERHEAD + estimate(entry.getKey()) + estimate(entry.getValue().getBuckets())
+                        + estimate(entry.getValue().getBounds());
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static long estimate(Object value) {
+        final long size;
+        if (value == null) {
+            size = 0;
+        } else if (value instanceof String) {
+            size = 40 + 2 * ((String) value).length();
+        } else if (value instanceof Map) {
+            long total = OBJECT_OVERHEAD;
+            for (final Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+                total += ENTRY_OVERHEAD + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            size = total;
+        } else if (value instanceof Collection) {
+            long total = OBJECT_OVERHEAD;
+            for (final Object item : (Collection<?>) value) {
+                total += 8 + estimate(item);
+            }
+            size = total;
+        } else {
+            size = OBJECT_OVERHEAD;
+        }
+        return size;
+    }
+
+}
@@ -4,14 +4,22 @@
  */
 package mil.nga.giat.data.elasticsearch;
 
+import java.io.IOException;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 @JsonIgnoreProperties(ignoreUnknown=true)
 public class ElasticResults {
 
+    @JsonDeserialize(using = TotalDeserializer.class)
     private Long total;
 
     @JsonProperty("max_score")
@@ -43,4 +51,30 @@ public class ElasticResults {
         this.hits = hits;
     }
 
+    /**
+     * Read the total number of hits from a number or, from 7.0, an object
+     * with the number of hits and whether it is exact.
+     */
+    static Long readTotal(JsonParser parser) throws IOException {
+        final Long total;
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            final JsonNode node = parser.readValueAsTree();
+            total = node.has("value") ? node.get("value").asLong() : null;
+        } else if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            total = null;
+        } else {
+            total = parser.getLongValue();
+        }
+        return total;
+    }
+
+    static class TotalDeserializer extends JsonDeserializer<Long> {
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return readTotal(parser);
+        }
+
+    }
+
 }
@@ -0,0 +1,187 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Collects search requests submitted within a short window, from any thread,
+ * and hands them to a dispatcher as a single batch (e.g. one _msearch
+ * request). The window starts with the first request of a batch; a batch is
+ * dispatched early when it reaches the maximum size. The dispatcher is
+ * responsible for completing the future of every task in the batch.
+ *
+ */
+public class ElasticSearchBatcher implements Closeable {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticSearchBatcher.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final Consumer<List<SearchTask>> dispatcher;
+
+    private final ScheduledExecutorService scheduler;
+
+    private List<SearchTask> pending;
+
+    /**
+     * Window flush of the pending batch, cancelled when the batch is
+     * dispatched first
+     */
+    private ScheduledFuture<?> pendingFlush;
+
+    private boolean closed;
+
+    /**
+     * @param windowMillis Time in milliseconds to wait for further requests
+     * after the first request of a batch
+     * @param maxBatchSize Maximum number of requests per batch
+     * @param dispatcher Sends a batch and completes its tasks
+     */
+    public ElasticSearchBatcher(long windowMillis, int maxBatchSize, Consumer<List<SearchTask>> dispatcher) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.dispatcher = dispatcher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "elasticsearch-msearch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new ArrayList<>();
+    }
+
+    public CompletableFuture<ElasticResponse> submit(String searchIndices, String type, Map<String,Object> body) {
+        final SearchTask task = new SearchTask(searchIndices, type, body);
+        List<SearchTask> batch = null;
+        synchronized (this) {
+            if (closed) {
+                batch = new ArrayList<>();
+            } else if (pending.size() + 1 >= maxBatchSize) {
+                batch = takePending();
+            } else {
+                pending.add(task);
+                if (pending.size() == 1) {
+                    final List<SearchTask> window = pending;
+                    pendingFlush = scheduler.schedule(() -> flush(window), windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (batch != null) {
+            batch.add(task);
+            dispatch(batch);
+        }
+        return task.getFuture();
+    }
+
+    /**
+     * Dispatch pending requests without waiting for the window to elapse.
+     */
+    public void flush() {
+        final List<SearchTask> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Dispatch the batch whose window elapsed, unless it has already been
+     * dispatched.
+     */
+    private void flush(List<SearchTask> window) {
+        final List<SearchTask> batch;
+        synchronized (this) {
+            if (pending != window) {
+                return;
+            }
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private List<SearchTask> takePending() {
+        final List<SearchTask> batch = pending;
+        pending = new ArrayList<>();
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<SearchTask> batch) {
+        LOGGER.fine("Dispatching batch of " + batch.size() + " search requests");
+        try {
+            dispatcher.accept(batch);
+        } catch (RuntimeException e) {
+            batch.forEach(task -> task.getFuture().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    public static class SearchTask {
+
+        private final String searchIndices;
+
+        private final String type;
+
+        private final Map<String,Object> body;
+
+        private final CompletableFuture<ElasticResponse> future;
+
+        SearchTask(String searchIndices, String type, Map<String,Object> body) {
+            this.searchIndices = searchIndices;
+            this.type = type;
+            this.body = body;
+            this.future = new CompletableFuture<>();
+        }
+
+        public String getSearchIndices() {
+            return searchIndices;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Map<String,Object> getBody() {
+            return body;
+        }
+
+        public CompletableFuture<ElasticResponse> getFuture() {
+            return future;
+        }
+
+    }
+
+}
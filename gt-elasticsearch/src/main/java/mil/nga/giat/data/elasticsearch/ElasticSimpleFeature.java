@@ -0,0 +1,322 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.Converters;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.geometry.BoundingBox;
+
+import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
+
+/**
+ * Feature backed by a search hit. Attributes are decoded and converted when
+ * first read, so that features used for rendering only pay for the
+ * attributes actually used. The coordinates of a geo_point default geometry
+ * are kept as primitives and bounds are computed from them without creating
+ * a geometry. The hit is released once all attributes have been decoded.
+ * <p>
+ * Features of a reader share its parser, which is not thread safe. Decoding
+ * is synchronized on the feature and on the parser, so features may be read
+ * from several threads. As with {@link SimpleFeatureImpl}, modifying a
+ * feature while it is read by other threads is not supported.
+ *
+ */
+public class ElasticSimpleFeature extends SimpleFeatureImpl {
+
+    private final ElasticDecodePlan plan;
+
+    private final ElasticParserUtil parserUtil;
+
+    private final ArrayEncoding arrayEncoding;
+
+    private final Float score;
+
+    private final Float relativeScore;
+
+    private final boolean[] decoded;
+
+    private int undecoded;
+
+    private ElasticHit hit;
+
+    /**
+     * 0 if the geo_point coordinates haven't been read, 1 if they have been
+     * read, -1 if the point is missing or not a single geo_point
+     */
+    private byte pointState;
+
+    private double x;
+
+    private double y;
+
+    public ElasticSimpleFeature(SimpleFeatureType featureType, String id, ElasticHit hit, Float score,
+            Float relativeScore, ElasticDecodePlan plan, ElasticParserUtil parserUtil, ArrayEncoding arrayEncoding) {
+        super(new Object[featureType.getAttributeCount()], featureType, new FeatureIdImpl(id), false);
+        this.hit = hit;
+        this.score = score;
+        this.relativeScore = relativeScore;
+        this.plan = plan;
+        this.parserUtil = parserUtil;
+        this.arrayEncoding = arrayEncoding;
+        this.decoded = new boolean[featureType.getAttributeCount()];
+        this.undecoded = decoded.length;
+    }
+
+    private synchronized void decode(int index) {
+        if (index < 0 || index >= decoded.length || decoded[index]) {
+            return;
+        }
+        Object value;
+        synchronized (parserUtil) {
+            value = plan.decode(index, hit, score, relativeScore, parserUtil, arrayEncoding);
+        }
+        if (value != null) {
+            final Class<?> binding = featureType.getDescriptor(index).getType().getBinding();
+            if (!binding.isInstance(value)) {
+                final Object converted = Converters.convert(value, binding);
+                if (converted != null) {
+                    value = converted;
+                }
+            }
+        }
+        values[index] = value;
+        setDecoded(index);
+    }
+
+    private synchronized void setDecoded(int index) {
+        if (index >= 0 && index < decoded.length && !decoded[index]) {
+            decoded[index] = true;
+            if (--undecoded == 0) {
+                hit = null;
+            }
+        }
+    }
+
+    private synchronized void decodeAll() {
+        if (undecoded > 0) {
+            for (int i = 0; i < decoded.length; i++) {
+                decode(i);
+            }
+        }
+    }
+
+    private void decodeGeometries() {
+        for (int i = 0; i < decoded.length; i++) {
+            if (plan.isGeometry(i)) {
+                decode(i);
+            }
+        }
+    }
+
+    private void setAllDecoded() {
+        for (int i = 0; i < decoded.length; i++) {
+            setDecoded(i);
+        }
+    }
+
+    /**
+     * @return Whether the primitive geo_point coordinates are available
+     */
+    private synchronized boolean readPoint() {
+        if (pointState == 0) {
+            pointState = -1;
+            final int index = plan.getGeoPointIndex();
+            if (index >= 0 && !decoded[index]) {
+                final double[] coordinates = new double[2];
+                final boolean read;
+                synchronized (parserUtil) {
+                    final List<Object> points = plan.readValues(index, hit, parserUtil);
+                    read = points != null && points.size() == 1 && parserUtil.readGeoPoint(points.get(0), coordinates);
+                }
+                if (read) {
+                    x = coordinates[0];
+                    y = coordinates[1];
+                    pointState = 1;
+                }
+            }
+        }
+        return pointState == 1;
+    }
+
+    private synchronized boolean isPointUndecoded() {
+        return plan.getGeoPointIndex() >= 0 && !decoded[plan.getGeoPointIndex()];
+    }
+
+    @Override
+    public Object getAttribute(int index) throws IndexOutOfBoundsException {
+        decode(index);
+        return super.getAttribute(index);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        decode(featureType.indexOf(name));
+        return super.getAttribute(name);
+    }
+
+    @Override
+    public Object getAttribute(Name name) {
+        decode(featureType.indexOf(name));
+        return super.getAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(int index, Object value) throws IndexOutOfBoundsException {
+        super.setAttribute(index, value);
+        setDecoded(index);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        super.setAttribute(name, value);
+        setDecoded(featureType.indexOf(name));
+    }
+
+    @Override
+    public void setAttribute(Name name, Object value) {
+        super.setAttribute(name, value);
+        setDecoded(featureType.indexOf(name));
+    }
+
+    @Override
+    public List<Object> getAttributes() {
+        decodeAll();
+        return super.getAttributes();
+    }
+
+    @Override
+    public void setAttributes(List<Object> values) {
+        super.setAttributes(values);
+        setAllDecoded();
+    }
+
+    @Override
+    public void setAttributes(Object[] values) {
+        super.setAttributes(values);
+        setAllDecoded();
+    }
+
+    @Override
+    public Object getDefaultGeometry() {
+        decodeGeometries();
+        return super.getDefaultGeometry();
+    }
+
+    @Override
+    public void setDefaultGeometry(Object geometry) {
+        super.setDefaultGeometry(geometry);
+        if (featureType.getGeometryDescriptor() != null) {
+            setDecoded(featureType.indexOf(featureType.getGeometryDescriptor().getName()));
+        }
+    }
+
+    @Override
+    public BoundingBox getBounds() {
+        if (isPointUndecoded() && readPoint()) {
+            return new ReferencedEnvelope(x, x, y, y, featureType.getCoordinateReferenceSystem());
+        }
+        decodeGeometries();
+        return super.getBounds();
+    }
+
+    @Override
+    public GeometryAttribute getDefaultGeometryProperty() {
+        decodeGeometries();
+        return super.getDefaultGeometryProperty();
+    }
+
+    @Override
+    public void setDefaultGeometryProperty(GeometryAttribute geometryAttribute) {
+        super.setDefaultGeometryProperty(geometryAttribute);
+        if (featureType.getGeometryDescriptor() != null) {
+            setDecoded(featureType.indexOf(featureType.getGeometryDescriptor().getName()));
+        }
+    }
+
+    @Override
+    public Collection<Property> getProperties() {
+        decodeAll();
+        return super.getProperties();
+    }
+
+    @Override
+    public Collection<Property> getProperties(Name name) {
+        decodeAll();
+        return super.getProperties(name);
+    }
+
+    @Override
+    public Collection<Property> getProperties(String name) {
+        decodeAll();
+        return super.getProperties(name);
+    }
+
+    @Override
+    public Property getProperty(Name name) {
+        decodeAll();
+        return super.getProperty(name);
+    }
+
+    @Override
+    public Property getProperty(String name) {
+        decodeAll();
+        return super.getProperty(name);
+    }
+
+    @Override
+    public Collection<? extends Property> getValue() {
+        decodeAll();
+        return super.getValue();
+    }
+
+    @Override
+    public void setValue(Collection<Property> values) {
+        decodeAll();
+        super.setValue(values);
+    }
+
+    @Override
+    public void setValue(Object newValue) {
+        decodeAll();
+        super.setValue(newValue);
+    }
+
+    @Override
+    public void validate() {
+        decodeAll();
+        super.validate();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        decodeAll();
+        if (obj instanceof ElasticSimpleFeature) {
+            ((ElasticSimpleFeature) obj).decodeAll();
+        }
+        return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        decodeAll();
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        decodeAll();
+        return super.toString();
+    }
+
+}
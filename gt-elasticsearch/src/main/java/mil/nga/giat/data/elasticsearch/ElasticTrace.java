@@ -0,0 +1,205 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Timeline of a datastore query, split in phases. A finished trace is
+ * committed as a JFR event when a recording enables the
+ * mil.nga.giat.data.elasticsearch.Query event and logged when it took longer
+ * than the slow query threshold. Phases may be recorded from several threads.
+ *
+ */
+public class ElasticTrace {
+
+    private final static Logger LOGGER = Logging.getLogger(ElasticTrace.class);
+
+    private static final EventRecorder EVENT_RECORDER = loadEventRecorder();
+
+    public enum Phase {
+
+        /**
+         * Translating the query to an Elasticsearch request
+         */
+        PLAN,
+
+        /**
+         * Building and serializing request bodies
+         */
+        SERIALIZE,
+
+        /**
+         * Waiting for responses, including time queued by the concurrency
+         * limiter and retries
+         */
+        HTTP,
+
+        /**
+         * Parsing buffered responses
+         */
+        PARSE,
+
+        /**
+         * Building features, including parsing streamed responses and
+         * fetching following scroll pages
+         */
+        DECODE,
+
+        /**
+         * Evaluating filters not supported by Elasticsearch
+         */
+        POST_FILTER
+
+    }
+
+    private final String layerName;
+
+    private final long slowThresholdMillis;
+
+    private final long start;
+
+    private final AtomicLongArray phases;
+
+    private final Object event;
+
+    private volatile byte[] requestBody;
+
+    private volatile long hits;
+
+    private volatile long features;
+
+    private boolean finished;
+
+    private ElasticTrace(String layerName, long slowThresholdMillis, Object event) {
+        this.layerName = layerName;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.start = System.nanoTime();
+        this.phases = new AtomicLongArray(Phase.values().length);
+        this.event = event;
+    }
+
+    /**
+     * Start a trace if queries are traced.
+     *
+     * @param layerName Layer queried
+     * @param slowThresholdMillis Minimum duration of logged queries, or 0 to
+     * disable the slow query log
+     * @return Trace or null when neither the slow query log nor the JFR event
+     * is enabled
+     */
+    public static ElasticTrace start(String layerName, long slowThresholdMillis) {
+        final Object event = EVENT_RECORDER != null ? EVENT_RECORDER.begin() : null;
+        if (event == null && slowThresholdMillis <= 0) {
+            return null;
+        }
+        return new ElasticTrace(layerName, slowThresholdMillis, event);
+    }
+
+    public void add(Phase phase, long nanos) {
+        phases.addAndGet(phase.ordinal(), nanos);
+    }
+
+    public long get(Phase phase) {
+        return phases.get(phase.ordinal());
+    }
+
+    /**
+     * @param requestBody Serialized search request, included in the slow
+     * query log
+     */
+    public void setRequestBody(byte[] requestBody) {
+        this.requestBody = requestBody;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public void setFeatures(long features) {
+        this.features = features;
+    }
+
+    /**
+     * Complete the trace. Calls after the first are ignored.
+     */
+    public void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        final long total = System.nanoTime() - start;
+        if (event != null) {
+            EVENT_RECORDER.commit(event, this, features);
+        }
+        if (slowThresholdMillis > 0 && TimeUnit.NANOSECONDS.toMillis(total) >= slowThresholdMillis
+                && LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(toString(total, features));
+        }
+    }
+
+    String getLayerName() {
+        return layerName;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    String getRequestBody() {
+        final byte[] data = requestBody;
+        return data != null ? new String(data, StandardCharsets.UTF_8) : null;
+    }
+
+    private String toString(long total, long features) {
+        final StringBuilder builder = new StringBuilder("Slow query: layer=").append(layerName)
+                .append(" total=").append(TimeUnit.NANOSECONDS.toMillis(total)).append("ms");
+        for (final Phase phase : Phase.values()) {
+            builder.append(' ').append(phase.name().toLowerCase()).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMillis(get(phase))).append("ms");
+        }
+        builder.append(" hits=").append(hits).append(" features=").append(features)
+                .append(" request=").append(getRequestBody());
+        return builder.toString();
+    }
+
+    /**
+     * @return Recorder of JFR events, or null if the JVM doesn't support JFR
+     * events or the module was built without them
+     */
+    private static EventRecorder loadEventRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            final Class<?> type = Class.forName(ElasticTrace.class.getPackage().getName() + ".ElasticQueryEvent$Recorder");
+            return (EventRecorder) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records traces as JFR events. Implemented by the optional JFR source
+     * set so that the module builds on JDK 8.
+     */
+    interface EventRecorder {
+
+        /**
+         * @return Started event or null if the event isn't enabled
+         */
+        Object begin();
+
+        void commit(Object event, ElasticTrace trace, long features);
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.io.IOException;
+
+import org.geotools.data.FeatureReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import mil.nga.giat.data.elasticsearch.ElasticTrace.Phase;
+
+/**
+ * Records the time spent reading features in a trace. A reader wrapping the
+ * Elasticsearch feature reader records decoding time. A reader wrapping the
+ * post filter records the remaining time as post filtering time. The
+ * outermost reader finishes the trace when closed.
+ *
+ */
+class ElasticTracingFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    private final FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+    private final ElasticTrace trace;
+
+    private final ElasticTracingFeatureReader decoder;
+
+    private final boolean finish;
+
+    private long nanos;
+
+    private long features;
+
+    private boolean closed;
+
+    /**
+     * @param delegate Reader
+     * @param trace Trace
+     * @param decoder Tracing reader wrapped by the post filter, or null if
+     * the delegate decodes features
+     * @param finish Whether the trace is finished when this reader is closed
+     */
+    ElasticTracingFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate, ElasticTrace trace,
+            ElasticTracingFeatureReader decoder, boolean finish) {
+        this.delegate = delegate;
+        this.trace = trace;
+        this.decoder = decoder;
+        this.finish = finish;
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final SimpleFeature feature = delegate.next();
+            features++;
+            return feature;
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.hasNext();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            if (!closed) {
+                closed = true;
+                if (decoder == null) {
+                    trace.add(Phase.DECODE, nanos);
+                } else {
+                    trace.add(Phase.POST_FILTER, Math.max(0, nanos - decoder.nanos));
+                }
+                if (finish) {
+                    trace.setFeatures(features);
+                    trace.finish();
+                }
+            }
+        }
+    }
+
+}
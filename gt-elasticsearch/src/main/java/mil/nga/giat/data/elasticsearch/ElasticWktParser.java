@@ -0,0 +1,273 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Reader of the WKT geometries stored in geo_shape fields. Two dimensional
+ * geometries are read with a single pass over the string, with coordinates
+ * collected in a reused buffer and handed to the coordinate sequence factory
+ * of the geometry factory. Empty geometries, geometries with Z or M
+ * ordinates and malformed strings are delegated to {@link WKTReader}.
+ * Instances are not thread safe.
+ *
+ */
+public class ElasticWktParser {
+
+    private static final String[] TAGS = { "POINT", "LINESTRING", "POLYGON", "MULTIPOINT", "MULTILINESTRING",
+            "MULTIPOLYGON", "GEOMETRYCOLLECTION" };
+
+    private final GeometryFactory geometryFactory;
+
+    private final WKTReader wktReader;
+
+    private String text;
+
+    private int position;
+
+    private double[] ordinates;
+
+    private int numOrdinates;
+
+    public ElasticWktParser(GeometryFactory geometryFactory) {
+        this.geometryFactory = geometryFactory;
+        this.wktReader = new WKTReader(geometryFactory);
+        this.ordinates = new double[64];
+    }
+
+    /**
+     * @return Whether the string starts with a WKT geometry tag
+     */
+    public static boolean isWkt(String value) {
+        for (final String tag : TAGS) {
+            if (value.startsWith(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param wkt WKT geometry
+     * @return Geometry, or null if the string is not valid WKT
+     */
+    public Geometry read(String wkt) {
+        text = wkt;
+        position = 0;
+        try {
+            final Geometry geometry = readGeometry();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw new UnsupportedWktException();
+            }
+            return geometry;
+        } catch (UnsupportedWktException e) {
+            try {
+                return wktReader.read(wkt);
+            } catch (ParseException pe) {
+                return null;
+            }
+        } finally {
+            text = null;
+        }
+    }
+
+    private Geometry readGeometry() {
+        skipWhitespace();
+        final int start = position;
+        while (position < text.length() && Character.isLetter(text.charAt(position))) {
+            position++;
+        }
+        final String tag = text.substring(start, position).toUpperCase();
+        skipWhitespace();
+        if (position < text.length() && Character.isLetter(text.charAt(position))) {
+            // EMPTY, Z, M or ZM
+            throw new UnsupportedWktException();
+        }
+        switch (tag) {
+        case "POINT": {
+            expect('(');
+            final Point point = geometryFactory.createPoint(readCoordinates(1));
+            expect(')');
+            return point;
+        }
+        case "LINESTRING":
+            return readLineString();
+        case "POLYGON":
+            return readPolygon();
+        case "MULTIPOINT": {
+            expect('(');
+            final CoordinateSequence sequence;
+            if (peek() == '(') {
+                // MULTIPOINT ((x y), (x y))
+                numOrdinates = 0;
+                do {
+                    expect('(');
+                    readCoordinate();
+                    expect(')');
+                } while (consume(','));
+                sequence = createSequence();
+            } else {
+                sequence = readCoordinates(0);
+            }
+            expect(')');
+            return geometryFactory.createMultiPoint(sequence);
+        }
+        case "MULTILINESTRING": {
+            expect('(');
+            final List<LineString> lineStrings = new ArrayList<>();
+            do {
+                lineStrings.add(readLineString());
+            } while (consume(','));
+            expect(')');
+            return geometryFactory.createMultiLineString(lineStrings.toArray(new LineString[lineStrings.size()]));
+        }
+        case "MULTIPOLYGON": {
+            expect('(');
+            final List<Polygon> polygons = new ArrayList<>();
+            do {
+                polygons.add(readPolygon());
+            } while (consume(','));
+            expect(')');
+            return geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
+        }
+        case "GEOMETRYCOLLECTION": {
+            expect('(');
+            final List<Geometry> geometries = new ArrayList<>();
+            do {
+                geometries.add(readGeometry());
+            } while (consume(','));
+            expect(')');
+            return geometryFactory.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
+        }
+        default:
+            throw new UnsupportedWktException();
+        }
+    }
+
+    private LineString readLineString() {
+        expect('(');
+        final LineString lineString = geometryFactory.createLineString(readCoordinates(0));
+        expect(')');
+        return lineString;
+    }
+
+    private Polygon readPolygon() {
+        expect('(');
+        final List<LinearRing> rings = new ArrayList<>();
+        do {
+            expect('(');
+            rings.add(geometryFactory.createLinearRing(readCoordinates(0)));
+            expect(')');
+        } while (consume(','));
+        expect(')');
+        final LinearRing[] holes = rings.subList(1, rings.size()).toArray(new LinearRing[rings.size() - 1]);
+        return geometryFactory.createPolygon(rings.get(0), holes);
+    }
+
+    /**
+     * Read a comma separated list of coordinates.
+     *
+     * @param expected Expected number of coordinates, or 0 for any
+     */
+    private CoordinateSequence readCoordinates(int expected) {
+        numOrdinates = 0;
+        do {
+            readCoordinate();
+        } while (consume(','));
+        if (expected > 0 && numOrdinates != 2 * expected) {
+            throw new UnsupportedWktException();
+        }
+        return createSequence();
+    }
+
+    private void readCoordinate() {
+        if (numOrdinates + 2 > ordinates.length) {
+            ordinates = Arrays.copyOf(ordinates, ordinates.length * 2);
+        }
+        ordinates[numOrdinates++] = readNumber();
+        ordinates[numOrdinates++] = readNumber();
+        skipWhitespace();
+        if (position < text.length() && text.charAt(position) != ',' && text.charAt(position) != ')') {
+            // third ordinate
+            throw new UnsupportedWktException();
+        }
+    }
+
+    private CoordinateSequence createSequence() {
+        final CoordinateSequenceFactory factory = geometryFactory.getCoordinateSequenceFactory();
+        if (factory instanceof PackedCoordinateSequenceFactory) {
+            return ((PackedCoordinateSequenceFactory) factory).create(Arrays.copyOf(ordinates, numOrdinates), 2);
+        }
+        final Coordinate[] coordinates = new Coordinate[numOrdinates / 2];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(ordinates[2 * i], ordinates[2 * i + 1]);
+        }
+        return factory.create(coordinates);
+    }
+
+    private double readNumber() {
+        skipWhitespace();
+        final int start = position;
+        final int end = ElasticParserUtil.scanNumber(text, start, true);
+        if (end == start) {
+            throw new UnsupportedWktException();
+        }
+        position = end;
+        return ElasticParserUtil.parseNumber(text, start, end);
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw new UnsupportedWktException();
+        }
+    }
+
+    private static class UnsupportedWktException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedWktException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -4,14 +4,99 @@
  */
 package mil.nga.giat.data.elasticsearch;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import org.locationtech.jts.geom.Envelope;
 
 import com.github.davidmoten.geo.GeoHash;
+import com.github.davidmoten.geo.LatLong;
 
 public class GeohashUtil {
 
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static final byte[] BASE32_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE32_VALUES, (byte) -1);
+        for (int i = 0; i < BASE32.length(); i++) {
+            BASE32_VALUES[BASE32.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Maximum length of geohashes decoded by {@link #decode(String, double[])}
+     * (60 bits)
+     */
+    private static final int MAX_LENGTH = 12;
+
+    /**
+     * @return Whether the string is a non empty geohash
+     */
+    public static boolean isGeohash(String value) {
+        final int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 128 || BASE32_VALUES[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the center of a geohash cell. Hashes of up to 12 characters are
+     * decoded by deinterleaving the hash bits, longer hashes fall back to
+     * {@link GeoHash#decodeHash(String)}.
+     *
+     * @param hash Geohash
+     * @param coordinates Array receiving the longitude and latitude
+     * @return Whether the hash was decoded
+     */
+    public static boolean decode(String hash, double[] coordinates) {
+        if (!isGeohash(hash)) {
+            return false;
+        }
+        final int length = hash.length();
+        if (length > MAX_LENGTH) {
+            final LatLong latLon = GeoHash.decodeHash(hash);
+            coordinates[0] = latLon.getLon();
+            coordinates[1] = latLon.getLat();
+            return true;
+        }
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits = (bits << 5) | BASE32_VALUES[hash.charAt(i)];
+        }
+        final int numBits = 5 * length;
+        // align the first (longitude) bit on the most significant bit
+        bits <<= 64 - numBits;
+        final int lonBits = (numBits + 1) / 2;
+        final int latBits = numBits / 2;
+        final long lon = compact(bits >>> 1) >>> (32 - lonBits);
+        final long lat = compact(bits) >>> (32 - latBits);
+        coordinates[0] = -180 + (lon + 0.5) * (360.0 / (1L << lonBits));
+        coordinates[1] = -90 + (lat + 0.5) * (180.0 / (1L << latBits));
+        return true;
+    }
+
+    /**
+     * @return Even bits of the value packed in the low 32 bits
+     */
+    private static long compact(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | (value >>> 1)) & 0x3333333333333333L;
+        value = (value | (value >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value >>> 4)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value >>> 8)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value >>> 16)) & 0x00000000FFFFFFFFL;
+        return value;
+    }
+
     public static int computePrecision(Envelope envelope, long size, double threshold) {
         return computePrecision(envelope, size, threshold, 1);
     }
@@ -4,10 +4,15 @@
  */
 package mil.nga.giat.data.elasticsearch;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,22 +22,47 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.geotools.util.logging.Logging;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import mil.nga.giat.data.elasticsearch.ElasticMappings.Mapping;
 
@@ -44,29 +74,95 @@ public class RestElasticClient implements ElasticClient {
 
     private final static double DEFAULT_VERSION = 6.0;
 
+    private final static ContentType NDJSON = ContentType.create("application/x-ndjson");
+
+    private final static String SMILE = "application/smile";
+
+    private final static String GZIP = "gzip";
+
+    private final static List<String> FILTER_PATH = Arrays.asList("_scroll_id", "hits.total", "hits.max_score",
+            "hits.hits._id", "hits.hits._source", "hits.hits.fields", "hits.hits.sort", "aggregations", "error", "status");
+
     private RestClient client;
 
     private ObjectMapper mapper;
 
-    private Double version;
+    private final ObjectMapper smileMapper;
+
+    private volatile boolean smileEnabled;
+
+    private volatile boolean compressionEnabled;
+
+    private volatile int requestCompressionThreshold;
+
+    private volatile Header[] headers;
+
+    private final Executor executor;
+
+    private volatile ElasticMetadataCache metadataCache;
+
+    private volatile ElasticSearchBatcher searchBatcher;
+
+    private volatile boolean searchCoalescingEnabled;
+
+    private volatile ElasticConcurrencyLimiter limiter;
+
+    private volatile ElasticBackoff backoff;
+
+    private volatile ElasticHedgePolicy hedgePolicy;
+
+    private volatile ElasticMetrics metrics;
+
+    private ScheduledExecutorService scheduler;
+
+    private final ObjectWriter keyWriter;
+
+    private final ConcurrentMap<String,CompletableFuture<ElasticResponse>> inFlightSearches;
+
+    private final AtomicLong coalescableSearchCount;
+
+    private final AtomicLong coalescedSearchCount;
 
     public RestElasticClient(RestClient client) {
+        this(client, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param client Low level REST client
+     * @param executor Executor used to parse responses of asynchronous requests
+     */
+    public RestElasticClient(RestClient client, Executor executor) {
         this.client = client;
+        this.executor = executor;
         this.mapper = new ObjectMapper();
         this.mapper.setDateFormat(DATE_FORMAT);
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        this.smileMapper.setDateFormat(DATE_FORMAT);
+        this.headers = new Header[0];
+        this.metadataCache = new ElasticMetadataCache();
+        this.backoff = new ElasticBackoff(0);
+        this.keyWriter = mapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.inFlightSearches = new ConcurrentHashMap<>();
+        this.coalescableSearchCount = new AtomicLong();
+        this.coalescedSearchCount = new AtomicLong();
     }
 
     @Override
     public double getVersion() {
-        if (version != null) {
-            return version;
+        try {
+            return metadataCache.getVersion(this::readVersion);
+        } catch (IOException e) {
+            return DEFAULT_VERSION;
         }
+    }
 
+    private Double readVersion() {
+        Double version;
         final Pattern pattern = Pattern.compile("(\\d+\\.\\d+)\\.\\d+");
         try {
             final Response response = performRequest("GET", "/", null);
-            try (final InputStream inputStream = response.getEntity().getContent()) {
-                Map<String,Object> info = mapper.readValue(inputStream, new TypeReference<Map<String, Object>>() {});
+            try (final InputStream inputStream = getContent(response)) {
+                Map<String,Object> info = getMapper(response).readValue(inputStream, new TypeReference<Map<String, Object>>() {});
                 @SuppressWarnings("unchecked")
                 Map<String,Object> ver = (Map<String,Object>) info.getOrDefault("version", Collections.EMPTY_MAP);
                 final Matcher m = pattern.matcher((String) ver.get("number"));
@@ -84,6 +180,107 @@ public class RestElasticClient implements ElasticClient {
         return version;
     }
 
+    @Override
+    public ElasticMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    @Override
+    public void setMetadataCache(ElasticMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    @Override
+    public void setSearchBatchWindow(long windowMillis) {
+        final ElasticSearchBatcher previous = searchBatcher;
+        if (windowMillis > 0) {
+            searchBatcher = new ElasticSearchBatcher(windowMillis, ElasticSearchBatcher.DEFAULT_MAX_BATCH_SIZE,
+                    this::multiSearch);
+        } else {
+            searchBatcher = null;
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    @Override
+    public void setSearchCoalescingEnabled(boolean searchCoalescingEnabled) {
+        this.searchCoalescingEnabled = searchCoalescingEnabled;
+    }
+
+    @Override
+    public void setSmileEnabled(boolean smileEnabled) {
+        this.smileEnabled = smileEnabled;
+        updateHeaders();
+    }
+
+    public boolean isSmileEnabled() {
+        return smileEnabled;
+    }
+
+    @Override
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+        updateHeaders();
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    @Override
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    private synchronized void updateHeaders() {
+        final List<Header> headers = new ArrayList<>();
+        if (smileEnabled) {
+            headers.add(new BasicHeader("Accept", SMILE));
+        }
+        if (compressionEnabled) {
+            headers.add(new BasicHeader("Accept-Encoding", GZIP));
+        }
+        this.headers = headers.toArray(new Header[headers.size()]);
+    }
+
+    @Override
+    public void setConcurrencyLimiter(ElasticConcurrencyLimiter limiter) {
+        final ElasticConcurrencyLimiter previous = this.limiter;
+        this.limiter = limiter;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public ElasticConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public void setBackoff(ElasticBackoff backoff) {
+        this.backoff = backoff;
+    }
+
+    @Override
+    public void setHedgePolicy(ElasticHedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    @Override
+    public void setMetrics(ElasticMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ElasticMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public List<String> getTypes(String indexName) throws IOException {
         return getMappings(indexName, null).keySet().stream().map(key -> (String) key).collect(Collectors.toList());
@@ -91,7 +288,36 @@ public class RestElasticClient implements ElasticClient {
 
     @Override
     public Map<String, Object> getMapping(String indexName, String type) throws IOException {
-        final Map<String, Mapping> mappings = getMappings(indexName, type);
+        return getProperties(getMappings(indexName, type), type);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getMappingAsync(String indexName, String type) {
+        final ElasticMetadataCache cache = metadataCache;
+        final Map<String, Mapping> cached = cache.getMappingsIfPresent(indexName, type);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(getProperties(cached, type));
+        }
+        return performRequestAsync("GET", getMappingPath(indexName, type), (HttpEntity) null)
+                .handleAsync((response, error) -> {
+                    final Map<String, Mapping> mappings;
+                    if (error == null) {
+                        try {
+                            mappings = readMappings(indexName, response);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                        cache.putMappings(indexName, type, mappings);
+                    } else if (getStatusCode(error) == 404) {
+                        mappings = Collections.emptyMap();
+                    } else {
+                        throw new CompletionException(unwrap(error));
+                    }
+                    return getProperties(mappings, type);
+                }, executor);
+    }
+
+    private Map<String, Object> getProperties(Map<String, Mapping> mappings, String type) {
         final Map<String,Object> properties;
         if (mappings.containsKey(type)) {
             properties = mappings.get(type).getProperties();
@@ -102,23 +328,34 @@ public class RestElasticClient implements ElasticClient {
     }
 
     private Map<String, Mapping> getMappings(String indexName, String type) throws IOException {
+        return metadataCache.getMappings(indexName, type, () -> loadMappings(indexName, type));
+    }
+
+    private Map<String, Mapping> loadMappings(String indexName, String type) throws IOException {
         final Response response;
         try {
-            final StringBuilder path = new StringBuilder("/").append(indexName).append("/_mapping");
-            if (type != null) {
-                path.append("/").append(type);
-            }
-            response = client.performRequest("GET", path.toString());
+            response = client.performRequest("GET", getMappingPath(indexName, type));
         } catch (ResponseException e) {
             if (e.getResponse().getStatusLine().getStatusCode() == 404) {
                 return Collections.emptyMap();
             }
             throw e;
         }
+        return readMappings(indexName, response);
+    }
+
+    private String getMappingPath(String indexName, String type) {
+        final StringBuilder path = new StringBuilder("/").append(indexName).append("/_mapping");
+        if (type != null) {
+            path.append("/").append(type);
+        }
+        return path.toString();
+    }
 
-        try (final InputStream inputStream = response.getEntity().getContent()) {
+    private Map<String, Mapping> readMappings(String indexName, Response response) throws IOException {
+        try (final InputStream inputStream = getContent(response)) {
             final Map<String,ElasticMappings> values;
-            values = mapper.readValue(inputStream, new TypeReference<Map<String, ElasticMappings>>() {});
+            values = getMapper(response).readValue(inputStream, new TypeReference<Map<String, ElasticMappings>>() {});
             final Map<String, Mapping> mappings;
             if (values.containsKey(indexName)) {
                 mappings = values.get(indexName).getMappings();
@@ -139,8 +376,360 @@ public class RestElasticClient implements ElasticClient {
 
     @Override
     public ElasticResponse search(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final ElasticTrace trace = request.getTrace();
+        if ((searchBatcher != null || searchCoalescingEnabled || hedgePolicy != null) && request.getScroll() == null) {
+            final long start = System.nanoTime();
+            final long recorded = trace != null ? getSerializeAndParse(trace) : 0;
+            try {
+                return getResponse(searchAsync(searchIndices, type, request));
+            } finally {
+                if (trace != null) {
+                    // the wait includes time spent queued in a batch or for a coalesced search
+                    final long other = getSerializeAndParse(trace) - recorded;
+                    trace.add(ElasticTrace.Phase.HTTP, System.nanoTime() - start - other);
+                }
+            }
+        }
+        return parseResponse(performSearch(searchIndices, type, request), trace);
+    }
+
+    private static long getSerializeAndParse(ElasticTrace trace) {
+        return trace.get(ElasticTrace.Phase.SERIALIZE) + trace.get(ElasticTrace.Phase.PARSE);
+    }
+
+    @Override
+    public CompletableFuture<ElasticResponse> searchAsync(String searchIndices, String type, ElasticRequest request) {
+        final ElasticTrace trace = request.getTrace();
+        final String path = getSearchPath(searchIndices, type, request);
+        final long start = System.nanoTime();
+        final Map<String,Object> requestBody;
+        final byte[] data;
+        try {
+            requestBody = getSearchBody(request);
+            // traced bodies are serialized up front for the slow query log
+            data = trace != null ? mapper.writeValueAsBytes(requestBody) : null;
+        } catch (IOException e) {
+            final CompletableFuture<ElasticResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (trace != null) {
+            trace.setRequestBody(data);
+            trace.add(ElasticTrace.Phase.SERIALIZE, System.nanoTime() - start);
+        }
+
+        final CompletableFuture<ElasticResponse> future;
+        if (request.getScroll() != null) {
+            // scroll contexts can't be shared or batched
+            future = parseResponseAsync(performSearchAsync(path, requestBody, data), trace);
+        } else if (searchCoalescingEnabled) {
+            future = coalesce(path, requestBody,
+                    () -> sendSearchAsync(searchIndices, type, path, requestBody, data, trace));
+        } else {
+            future = sendSearchAsync(searchIndices, type, path, requestBody, data, trace);
+        }
+        if (trace == null) {
+            return future;
+        }
+        return future.whenComplete((response, error) -> {
+            if (response != null) {
+                trace.setHits(trace.getHits() + response.getNumHits());
+            }
+        });
+    }
+
+    /**
+     * Send a search. Batched searches are parsed with the rest of the batch
+     * so their parse time isn't traced.
+     */
+    private CompletableFuture<ElasticResponse> sendSearchAsync(String searchIndices, String type, String path,
+            Map<String,Object> requestBody, byte[] data, ElasticTrace trace) {
+        final ElasticSearchBatcher batcher = searchBatcher;
+        if (batcher != null) {
+            return batcher.submit(searchIndices, type, requestBody);
+        }
+        // only the primary request is traced since hedged responses may both be parsed
+        return hedge(() -> parseResponseAsync(performSearchAsync(path, requestBody, data), trace),
+                () -> parseResponseAsync(performSearchAsync(path, requestBody, data), null));
+    }
+
+    private CompletableFuture<Response> performSearchAsync(String path, Map<String,Object> requestBody, byte[] data) {
+        if (data == null) {
+            return performRequestAsync("POST", path, requestBody);
+        }
+        try {
+            return performRequestAsync("POST", path, createEntity(data, ContentType.APPLICATION_JSON));
+        } catch (IOException e) {
+            final CompletableFuture<Response> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Send a duplicate search when no response is received within the hedge
+     * delay and use whichever response arrives first. Duplicates go to the
+     * next host in the client round robin. The slower response is ignored
+     * since requests can't be cancelled.
+     */
+    private CompletableFuture<ElasticResponse> hedge(Supplier<CompletableFuture<ElasticResponse>> search,
+            Supplier<CompletableFuture<ElasticResponse>> duplicate) {
+        final ElasticHedgePolicy policy = hedgePolicy;
+        if (policy == null) {
+            return search.get();
+        }
+
+        final long delay = policy.getDelay();
+        final long start = System.nanoTime();
+        final CompletableFuture<ElasticResponse> primary = search.get();
+        primary.thenRun(() -> policy.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        if (delay < 0) {
+            return primary;
+        }
+
+        final CompletableFuture<ElasticResponse> result = new CompletableFuture<>();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        final ScheduledFuture<?> scheduled;
+        try {
+            scheduled = getScheduler().schedule(() -> {
+                if (!result.isDone()) {
+                    outstanding.incrementAndGet();
+                    policy.hedged();
+                    LOGGER.fine("No response after " + delay + "ms, sending hedged search");
+                    duplicate.get().whenComplete((response, error) -> {
+                        if (error == null) {
+                            if (result.complete(response)) {
+                                policy.hedgeWon();
+                            }
+                        } else if (outstanding.decrementAndGet() == 0) {
+                            result.completeExceptionally(unwrap(error));
+                        }
+                    });
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return primary;
+        }
+        primary.whenComplete((response, error) -> {
+            scheduled.cancel(false);
+            if (error == null) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+        return result;
+    }
+
+    public ElasticHedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Share the response of an identical search that is still in flight
+     * instead of sending the request again. The shared response must not be
+     * modified by callers.
+     */
+    private CompletableFuture<ElasticResponse> coalesce(String path, Map<String,Object> requestBody,
+            Supplier<CompletableFuture<ElasticResponse>> search) {
+        final String key;
+        try {
+            key = path + "\n" + keyWriter.writeValueAsString(requestBody);
+        } catch (IOException e) {
+            return search.get();
+        }
+
+        coalescableSearchCount.incrementAndGet();
+        final CompletableFuture<ElasticResponse> future = new CompletableFuture<>();
+        final CompletableFuture<ElasticResponse> existing = inFlightSearches.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedSearchCount.incrementAndGet();
+            LOGGER.fine("Coalescing search with in-flight request: " + path);
+            return existing.thenApply(response -> response);
+        }
+
+        search.get().whenComplete((response, error) -> {
+            inFlightSearches.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(unwrap(error));
+            } else {
+                future.complete(response);
+            }
+        });
+        return future.thenApply(response -> response);
+    }
+
+    /**
+     * @return Number of searches eligible for coalescing
+     */
+    public long getCoalescableSearchCount() {
+        return coalescableSearchCount.get();
+    }
+
+    /**
+     * @return Number of searches answered by an identical in-flight search
+     */
+    public long getCoalescedSearchCount() {
+        return coalescedSearchCount.get();
+    }
+
+    public int getInFlightSearchCount() {
+        return inFlightSearches.size();
+    }
+
+    /**
+     * Send a batch of searches as a single _msearch request and complete the
+     * future of each search with its own response or error.
+     */
+    void multiSearch(List<ElasticSearchBatcher.SearchTask> batch) {
+        if (batch.size() == 1) {
+            final ElasticSearchBatcher.SearchTask task = batch.get(0);
+            final String path = "/" + task.getSearchIndices() + "/" + task.getType() + "/_search";
+            parseResponseAsync(performRequestAsync("POST", path, task.getBody())).whenComplete((response, error) -> {
+                if (error != null) {
+                    task.getFuture().completeExceptionally(unwrap(error));
+                } else {
+                    task.getFuture().complete(response);
+                }
+            });
+            return;
+        }
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            for (final ElasticSearchBatcher.SearchTask task : batch) {
+                final Map<String,Object> header = new HashMap<>();
+                header.put("index", task.getSearchIndices());
+                header.put("type", task.getType());
+                data.write(mapper.writeValueAsBytes(header));
+                data.write('\n');
+                data.write(mapper.writeValueAsBytes(task.getBody()));
+                data.write('\n');
+            }
+        } catch (IOException e) {
+            batch.forEach(task -> task.getFuture().completeExceptionally(e));
+            return;
+        }
+        final HttpEntity entity;
+        try {
+            entity = createEntity(data.toByteArray(), NDJSON);
+        } catch (IOException e) {
+            batch.forEach(task -> task.getFuture().completeExceptionally(e));
+            return;
+        }
+        performRequestAsync("POST", "/_msearch", entity).whenCompleteAsync((response, error) -> {
+            if (error != null) {
+                batch.forEach(task -> task.getFuture().completeExceptionally(unwrap(error)));
+                return;
+            }
+            try {
+                readMultiSearchResponse(response, batch);
+            } catch (IOException e) {
+                batch.forEach(task -> task.getFuture().completeExceptionally(e));
+            }
+        }, executor);
+    }
+
+    private void readMultiSearchResponse(Response response, List<ElasticSearchBatcher.SearchTask> batch) throws IOException {
+        final JsonNode responses;
+        try (final InputStream inputStream = getContent(response)) {
+            responses = getMapper(response).readTree(inputStream).path("responses");
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            final CompletableFuture<ElasticResponse> future = batch.get(i).getFuture();
+            final JsonNode node = responses.get(i);
+            if (node == null) {
+                future.completeExceptionally(new IOException("Missing response in multi-search result"));
+            } else if (node.has("error")) {
+                future.completeExceptionally(new IOException("Error executing search request: " + node.get("error")));
+            } else {
+                try {
+                    future.complete(mapper.treeToValue(node, ElasticResponse.class));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static ElasticResponse getResponse(CompletableFuture<ElasticResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for search response", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = unwrap(e.getCause());
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error executing search request", cause);
+        }
+    }
+
+    @Override
+    public ElasticResponseStream searchStream(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final Response response = performSearch(searchIndices, type, request);
+        final InputStream inputStream = getContent(response);
+        try {
+            return new ElasticResponseStream(getMapper(response), inputStream);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long count(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final String path = "/" + searchIndices + "/" + type + "/_count";
+        final Map<String,Object> requestBody = new HashMap<>();
+        if (request.getQuery() != null) {
+            requestBody.put("query", request.getQuery());
+        }
+        final ElasticTrace trace = request.getTrace();
+        final Response response = performRequest("POST", path, requestBody, trace);
+        final long start = System.nanoTime();
+        try (final InputStream inputStream = getContent(response)) {
+            final Map<String,Object> result = getMapper(response).readValue(inputStream, new TypeReference<Map<String, Object>>() {});
+            if (trace != null) {
+                trace.add(ElasticTrace.Phase.PARSE, System.nanoTime() - start);
+            }
+            final Object count = result.get("count");
+            if (!(count instanceof Number)) {
+                throw new IOException("Unexpected count response: " + result);
+            }
+            return ((Number) count).longValue();
+        }
+    }
+
+    private Response performSearch(String searchIndices, String type, ElasticRequest request) throws IOException {
+        final String path = getSearchPath(searchIndices, type, request);
+        final ElasticTrace trace = request.getTrace();
+        final long start = System.nanoTime();
+        final Map<String,Object> requestBody = getSearchBody(request);
+        if (trace != null) {
+            trace.add(ElasticTrace.Phase.SERIALIZE, System.nanoTime() - start);
+        }
+        return performRequest("POST", path, requestBody, trace);
+    }
+
+    private String getSearchPath(String searchIndices, String type, ElasticRequest request) {
         final StringBuilder pathBuilder = new StringBuilder("/" + searchIndices + "/" + type + "/_search");
 
+        if (request.getScroll() != null) {
+            pathBuilder.append("?scroll=" + request.getScroll() + "s");
+        }
+
+        if (request.getHitMetadata() != null) {
+            pathBuilder.append(request.getScroll() != null ? "&" : "?");
+            pathBuilder.append("filter_path=").append(String.join(",", FILTER_PATH));
+            request.getHitMetadata().stream().sorted().forEach(name -> pathBuilder.append(",hits.hits.").append(name));
+        }
+
+        return pathBuilder.toString();
+    }
+
+    private Map<String,Object> getSearchBody(ElasticRequest request) throws IOException {
         final Map<String,Object> requestBody = new HashMap<>();
 
         if (request.getSize() != null) {
@@ -151,15 +740,33 @@ public class RestElasticClient implements ElasticClient {
             requestBody.put("from", request.getFrom());
         }
 
-        if (request.getScroll() != null) {
-            pathBuilder.append("?scroll=" + request.getScroll() + "s");
-        }
-
         final List<String> sourceIncludes = request.getSourceIncludes();
-        if (sourceIncludes.size() == 1) {
+        if (Boolean.FALSE.equals(request.getSourceEnabled())) {
+            requestBody.put("_source", false);
+        } else if (sourceIncludes.size() == 1) {
             requestBody.put("_source", sourceIncludes.get(0));
         } else if (!sourceIncludes.isEmpty()) {
             requestBody.put("_source", sourceIncludes);
+        } else if (!request.getDocValueFields().isEmpty()) {
+            // all fields are read from doc values
+            requestBody.put("_source", false);
+        }
+
+        if (!request.getDocValueFields().isEmpty()) {
+            // formats are supported from 6.4
+            final boolean formats = getVersion() >= 6.4;
+            final List<Object> docValueFields = new ArrayList<>();
+            for (final Entry<String,String> entry : request.getDocValueFields().entrySet()) {
+                if (formats && entry.getValue() != null) {
+                    final Map<String,Object> docValueField = new HashMap<>();
+                    docValueField.put("field", entry.getKey());
+                    docValueField.put("format", entry.getValue());
+                    docValueFields.add(docValueField);
+                } else {
+                    docValueFields.add(entry.getKey());
+                }
+            }
+            requestBody.put("docvalue_fields", docValueFields);
         }
 
         if (!request.getFields().isEmpty()) {
@@ -171,6 +778,14 @@ public class RestElasticClient implements ElasticClient {
             requestBody.put("sort", request.getSorts());
         }
 
+        if (request.getSearchAfter() != null) {
+            requestBody.put("search_after", request.getSearchAfter());
+        }
+
+        if (request.getTrackTotalHits() != null && getVersion() >= 6) {
+            requestBody.put("track_total_hits", request.getTrackTotalHits());
+        }
+
         if (request.getQuery() != null) {
             requestBody.put("query", request.getQuery());
         }
@@ -179,33 +794,367 @@ public class RestElasticClient implements ElasticClient {
             requestBody.put("aggregations", request.getAggregations());
         }
 
+        if (request.getSliceId() != null && request.getSliceMax() != null) {
+            final Map<String,Object> slice = new HashMap<>();
+            slice.put("id", request.getSliceId());
+            slice.put("max", request.getSliceMax());
+            requestBody.put("slice", slice);
+        }
+
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Elasticsearch request:\n" + mapper.writerWithDefaultPrettyPrinter().writeValueAsString(requestBody));
         }
-        return parseResponse(performRequest("POST", pathBuilder.toString(), requestBody));
+        return requestBody;
     }
 
     Response performRequest(String method, String path, Map<String,Object> requestBody) throws IOException {
         final byte[] data = mapper.writeValueAsBytes(requestBody);
-        final HttpEntity entity = new ByteArrayEntity(data, ContentType.APPLICATION_JSON);
-        final Response response = client.performRequest(
-                method,
-                path,
-                Collections.<String, String>emptyMap(),
-                entity);
+        return sendRequest(method, path, createEntity(data, ContentType.APPLICATION_JSON));
+    }
+
+    /**
+     * Execute request, recording the time spent serializing the request body
+     * and waiting for the response in the trace.
+     */
+    private Response performRequest(String method, String path, Map<String,Object> requestBody, ElasticTrace trace)
+            throws IOException {
+        if (trace == null) {
+            return performRequest(method, path, requestBody);
+        }
+        final long start = System.nanoTime();
+        final byte[] data = mapper.writeValueAsBytes(requestBody);
+        trace.setRequestBody(data);
+        final HttpEntity entity = createEntity(data, ContentType.APPLICATION_JSON);
+        final long sent = System.nanoTime();
+        trace.add(ElasticTrace.Phase.SERIALIZE, sent - start);
+        try {
+            return sendRequest(method, path, entity);
+        } finally {
+            trace.add(ElasticTrace.Phase.HTTP, System.nanoTime() - sent);
+        }
+    }
+
+    private Response sendRequest(String method, String path, HttpEntity entity) throws IOException {
+        final ElasticBackoff backoff = this.backoff;
+        int attempt = 0;
+        while (true) {
+            Response response = null;
+            boolean rejected = false;
+            final ElasticConcurrencyLimiter limiter = acquirePermit();
+            final ElasticMetrics metrics = this.metrics;
+            final long start = System.nanoTime();
+            try {
+                response = client.performRequest(
+                        method,
+                        path,
+                        Collections.<String, String>emptyMap(),
+                        entity,
+                        getHeaders());
+            } catch (ResponseException e) {
+                rejected = isRejected(e);
+                if (!rejected || !backoff.canRetry(attempt)) {
+                    throw e;
+                }
+            } finally {
+                if (limiter != null) {
+                    limiter.release(rejected);
+                }
+                if (metrics != null) {
+                    metrics.recordRequest(System.nanoTime() - start, response == null
+                            || response.getStatusLine().getStatusCode() >= 400);
+                }
+            }
+
+            if (response != null) {
+                if (response.getStatusLine().getStatusCode() >= 400) {
+                    throw new IOException("Error executing request: " + response.getStatusLine().getReasonPhrase());
+                }
+                return response;
+            }
 
-        if (response.getStatusLine().getStatusCode() >= 400) {
-            throw new IOException("Error executing request: " + response.getStatusLine().getReasonPhrase());
+            final long delay = backoff.getDelay(attempt++);
+            LOGGER.fine("Request rejected by cluster, retrying in " + delay + "ms (attempt " + attempt + ")");
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting to retry request", e);
+            }
         }
-        return response;
+    }
+
+    private ElasticConcurrencyLimiter acquirePermit() throws IOException {
+        final ElasticConcurrencyLimiter limiter = this.limiter;
+        if (limiter != null) {
+            final CompletableFuture<Void> permit = limiter.acquire();
+            try {
+                // the limiter fails the permit on timeout, this only guards
+                // against a permit never completed
+                permit.get(limiter.getQueueTimeoutMillis() + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                limiter.abandon(permit);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for a request permit", e);
+            } catch (TimeoutException e) {
+                limiter.abandon(permit);
+                throw new IOException("Timed out waiting " + limiter.getQueueTimeoutMillis()
+                        + "ms for a request permit", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = unwrap(e.getCause());
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Execute request without blocking the calling thread. The returned
+     * future is completed on the HTTP client I/O thread and should not be used
+     * for blocking or CPU intensive work without switching executors.
+     */
+    CompletableFuture<Response> performRequestAsync(String method, String path, Map<String,Object> requestBody) {
+        final HttpEntity entity;
+        try {
+            if (requestBody != null) {
+                final byte[] data = mapper.writeValueAsBytes(requestBody);
+                entity = createEntity(data, ContentType.APPLICATION_JSON);
+            } else {
+                entity = null;
+            }
+        } catch (IOException e) {
+            final CompletableFuture<Response> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return performRequestAsync(method, path, entity);
+    }
+
+    CompletableFuture<Response> performRequestAsync(String method, String path, HttpEntity entity) {
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        sendAsync(method, path, entity, 0, future);
+        return future;
+    }
+
+    private void sendAsync(String method, String path, HttpEntity entity, int attempt, CompletableFuture<Response> future) {
+        final ElasticConcurrencyLimiter limiter = this.limiter;
+        if (limiter == null) {
+            sendAsync(method, path, entity, attempt, future, null);
+        } else {
+            limiter.acquire().whenComplete((permit, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(unwrap(error));
+                } else {
+                    sendAsync(method, path, entity, attempt, future, limiter);
+                }
+            });
+        }
+    }
+
+    private void sendAsync(String method, String path, HttpEntity entity, int attempt, CompletableFuture<Response> future,
+            ElasticConcurrencyLimiter limiter) {
+        final ElasticMetrics metrics = this.metrics;
+        final long start = System.nanoTime();
+        try {
+            client.performRequestAsync(
+                    method,
+                    path,
+                    Collections.<String, String>emptyMap(),
+                    entity,
+                    new ResponseListener() {
+                        @Override
+                        public void onSuccess(Response response) {
+                            if (limiter != null) {
+                                limiter.release(false);
+                            }
+                            if (metrics != null) {
+                                metrics.recordRequest(System.nanoTime() - start,
+                                        response.getStatusLine().getStatusCode() >= 400);
+                            }
+                            if (response.getStatusLine().getStatusCode() >= 400) {
+                                future.completeExceptionally(new IOException("Error executing request: "
+                                        + response.getStatusLine().getReasonPhrase()));
+                            } else {
+                                future.complete(response);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Exception exception) {
+                            final boolean rejected = isRejected(exception);
+                            if (limiter != null) {
+                                limiter.release(rejected);
+                            }
+                            if (metrics != null) {
+                                metrics.recordRequest(System.nanoTime() - start, true);
+                            }
+                            final ElasticBackoff backoff = RestElasticClient.this.backoff;
+                            if (rejected && backoff.canRetry(attempt)) {
+                                final long delay = backoff.getDelay(attempt);
+                                LOGGER.fine("Request rejected by cluster, retrying in " + delay + "ms (attempt "
+                                        + (attempt + 1) + ")");
+                                try {
+                                    getScheduler().schedule(() -> sendAsync(method, path, entity, attempt + 1, future),
+                                            delay, TimeUnit.MILLISECONDS);
+                                } catch (RejectedExecutionException e) {
+                                    future.completeExceptionally(exception);
+                                }
+                            } else {
+                                future.completeExceptionally(exception);
+                            }
+                        }
+                    },
+                    getHeaders());
+        } catch (Exception e) {
+            if (limiter != null) {
+                limiter.release(false);
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "elasticsearch-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    private Header[] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Create a request entity, gzip compressed when its size reaches the
+     * request compression threshold.
+     */
+    private HttpEntity createEntity(byte[] data, ContentType contentType) throws IOException {
+        final int threshold = requestCompressionThreshold;
+        if (threshold <= 0 || data.length < threshold) {
+            return new ByteArrayEntity(data, contentType);
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4);
+        try (final OutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(data);
+        }
+        final ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray(), contentType);
+        entity.setContentEncoding(GZIP);
+        return entity;
+    }
+
+    /**
+     * @return Response content, decompressed while it is read when the
+     * response is gzip encoded
+     */
+    private InputStream getContent(Response response) throws IOException {
+        final HttpEntity entity = response.getEntity();
+        final ElasticMetrics metrics = this.metrics;
+        final InputStream inputStream;
+        if (metrics != null) {
+            inputStream = new MeteredInputStream(entity.getContent(), metrics);
+        } else {
+            inputStream = entity.getContent();
+        }
+        final Header contentEncoding = entity.getContentEncoding();
+        if (contentEncoding != null && GZIP.equalsIgnoreCase(contentEncoding.getValue())) {
+            try {
+                return new GZIPInputStream(inputStream);
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        }
+        return inputStream;
+    }
+
+    /**
+     * @return Mapper for the response content type, which is SMILE when
+     * requested and supported by the cluster and JSON otherwise
+     */
+    private ObjectMapper getMapper(Response response) {
+        final Header contentType = response.getEntity().getContentType();
+        if (contentType != null && contentType.getValue() != null && contentType.getValue().startsWith(SMILE)) {
+            return smileMapper;
+        }
+        return mapper;
+    }
+
+    private static boolean isRejected(Throwable error) {
+        return getStatusCode(error) == 429;
     }
 
     private ElasticResponse parseResponse(final Response response) throws IOException {
-        try (final InputStream inputStream = response.getEntity().getContent()) {
-            return mapper.readValue(inputStream, ElasticResponse.class);
+        return parseResponse(response, null);
+    }
+
+    private ElasticResponse parseResponse(final Response response, ElasticTrace trace) throws IOException {
+        final ElasticMetrics metrics = this.metrics;
+        final long start = System.nanoTime();
+        try (final InputStream inputStream = getContent(response)) {
+            final ElasticResponse elasticResponse = getMapper(response).readValue(inputStream, ElasticResponse.class);
+            if (trace != null) {
+                trace.setHits(trace.getHits() + elasticResponse.getNumHits());
+            }
+            return elasticResponse;
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.recordParse(nanos);
+            }
+            if (trace != null) {
+                trace.add(ElasticTrace.Phase.PARSE, nanos);
+            }
         }
     }
 
+    private CompletableFuture<ElasticResponse> parseResponseAsync(CompletableFuture<Response> future) {
+        return parseResponseAsync(future, null);
+    }
+
+    /**
+     * Parse the response on the executor. Only the parse time is added to
+     * the trace, hits are added once the search completes.
+     */
+    private CompletableFuture<ElasticResponse> parseResponseAsync(CompletableFuture<Response> future,
+            ElasticTrace trace) {
+        return future.thenApplyAsync(response -> {
+            final long start = System.nanoTime();
+            try {
+                return parseResponse(response);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                if (trace != null) {
+                    trace.add(ElasticTrace.Phase.PARSE, System.nanoTime() - start);
+                }
+            }
+        }, executor);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static int getStatusCode(Throwable error) {
+        final Throwable cause = unwrap(error);
+        final int statusCode;
+        if (cause instanceof ResponseException) {
+            statusCode = ((ResponseException) cause).getResponse().getStatusLine().getStatusCode();
+        } else {
+            statusCode = -1;
+        }
+        return statusCode;
+    }
+
     @Override
     public ElasticResponse scroll(String scrollId, Integer scrollTime) throws IOException {
         final String path = "/_search/scroll";
@@ -217,6 +1166,17 @@ public class RestElasticClient implements ElasticClient {
         return parseResponse(performRequest("POST", path, requestBody));
     }
 
+    @Override
+    public CompletableFuture<ElasticResponse> scrollAsync(String scrollId, Integer scrollTime) {
+        final String path = "/_search/scroll";
+
+        final Map<String,Object> requestBody = new HashMap<>();
+        requestBody.put("scroll_id", scrollId);
+        requestBody.put("scroll", scrollTime + "s");
+
+        return parseResponseAsync(performRequestAsync("POST", path, requestBody));
+    }
+
     @Override
     public void clearScroll(Set<String> scrollIds) throws IOException {
         final String path = "/_search/scroll";
@@ -231,6 +1191,17 @@ public class RestElasticClient implements ElasticClient {
     @Override
     public void close() throws IOException {
         LOGGER.fine("Closing client: " + client);
+        if (searchBatcher != null) {
+            searchBatcher.close();
+        }
+        if (limiter != null) {
+            limiter.close();
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
         client.close();
     }
 
@@ -254,14 +1225,70 @@ public class RestElasticClient implements ElasticClient {
     private Set<String> getIndices(String alias) {
         Set<String> indices = null;
         try {
-            final Response response = performRequest("GET", "/_alias/" + alias, null);
-            try (final InputStream inputStream = response.getEntity().getContent()) {
-                final Map<String,Object> result = mapper.readValue(inputStream, new TypeReference<Map<String, Object>>() {});
-                indices = result.keySet();
-            }
+            indices = metadataCache.getIndices(alias, () -> loadIndices(alias));
         } catch (IOException e) {
             indices = new HashSet<>();
         }
         return indices;
     }
+
+    private Set<String> loadIndices(String alias) throws IOException {
+        final Response response = performRequest("GET", "/_alias/" + alias, null);
+        try (final InputStream inputStream = getContent(response)) {
+            final Map<String,Object> result = getMapper(response).readValue(inputStream, new TypeReference<Map<String, Object>>() {});
+            return result.keySet();
+        }
+    }
+    /**
+     * Counts bytes read from a response and records them when closed.
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+
+        private final ElasticMetrics metrics;
+
+        private long count;
+
+        private boolean closed;
+
+        MeteredInputStream(InputStream inputStream, ElasticMetrics metrics) {
+            super(inputStream);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                metrics.recordResponseBytes(count);
+            }
+            super.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,99 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import mil.nga.giat.data.elasticsearch.ElasticTrace.Phase;
+
+/**
+ * JFR event committed for each traced query. This source set is only
+ * compiled by the jfr profile (JDK 11 or later) and the event is only loaded
+ * through {@link Recorder} when the running JVM supports JFR events.
+ *
+ */
+@Name("mil.nga.giat.data.elasticsearch.Query")
+@Label("Elasticsearch Query")
+@Category("Elasticsearch")
+@Description("Datastore query split in phases")
+@StackTrace(false)
+class ElasticQueryEvent extends Event {
+
+    @Label("Layer")
+    String layer;
+
+    @Label("Plan")
+    @Timespan
+    long plan;
+
+    @Label("Serialize")
+    @Timespan
+    long serialize;
+
+    @Label("HTTP")
+    @Timespan
+    long http;
+
+    @Label("Parse")
+    @Timespan
+    long parse;
+
+    @Label("Decode")
+    @Timespan
+    long decode;
+
+    @Label("Post Filter")
+    @Timespan
+    long postFilter;
+
+    @Label("Hits")
+    long hits;
+
+    @Label("Features")
+    long features;
+
+    @Label("Request")
+    String request;
+
+    static class Recorder implements ElasticTrace.EventRecorder {
+
+        @Override
+        public Object begin() {
+            final ElasticQueryEvent event = new ElasticQueryEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        @Override
+        public void commit(Object object, ElasticTrace trace, long features) {
+            final ElasticQueryEvent event = (ElasticQueryEvent) object;
+            event.end();
+            if (event.shouldCommit()) {
+                event.layer = trace.getLayerName();
+                event.plan = trace.get(Phase.PLAN);
+                event.serialize = trace.get(Phase.SERIALIZE);
+                event.http = trace.get(Phase.HTTP);
+                event.parse = trace.get(Phase.PARSE);
+                event.decode = trace.get(Phase.DECODE);
+                event.postFilter = trace.get(Phase.POST_FILTER);
+                event.hits = trace.getHits();
+                event.features = features;
+                event.request = trace.getRequestBody();
+                event.commit();
+            }
+        }
+
+    }
+
+}
@@ -41,6 +41,10 @@ public class ElasticAttributeTest {
 
     private boolean nested;
 
+    private boolean docValues;
+
+    private boolean useDocValues;
+
     @Before
     public void setup() {
         name = "theName";
@@ -56,6 +60,8 @@ public class ElasticAttributeTest {
         analyzed = true;
         stored = true;
         nested = true;
+        docValues = true;
+        useDocValues = true;
     }
 
     @Test
@@ -71,6 +77,8 @@ public class ElasticAttributeTest {
         attr.setAnalyzed(analyzed);
         attr.setStored(stored);
         attr.setNested(nested);
+        attr.setDocValues(docValues);
+        attr.setUseDocValues(useDocValues);
         assertEquals(attr.getName(), name);
         assertEquals(attr.getShortName(), shortName);
         assertEquals(attr.getUseShortName(), useShortName);
@@ -83,6 +91,22 @@ public class ElasticAttributeTest {
         assertEquals(attr.getAnalyzed(), analyzed);
         assertEquals(attr.isStored(), stored);
         assertEquals(attr.isNested(), nested);
+        assertEquals(attr.isDocValues(), docValues);
+        assertEquals(attr.getUseDocValues(), useDocValues);
+    }
+
+    @Test
+    public void testReadFromDocValues() {
+        assertFalse(attr.isReadFromDocValues());
+        attr.setDocValues(true);
+        assertFalse(attr.isReadFromDocValues());
+        attr.setUseDocValues(true);
+        assertTrue(attr.isReadFromDocValues());
+        attr.setStored(true);
+        assertFalse(attr.isReadFromDocValues());
+        attr.setStored(false);
+        attr.setNested(true);
+        assertFalse(attr.isReadFromDocValues());
     }
 
     @Test
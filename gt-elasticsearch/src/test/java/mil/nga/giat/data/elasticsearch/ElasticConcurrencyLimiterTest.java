@@ -0,0 +1,141 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ElasticConcurrencyLimiterTest {
+
+    private ElasticConcurrencyLimiter limiter;
+
+    @After
+    public void teardown() {
+        if (limiter != null) {
+            limiter.close();
+        }
+    }
+
+    @Test
+    public void testQueue() {
+        limiter = new ElasticConcurrencyLimiter(2, 60000, 10);
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isDone());
+        assertEquals(1, limiter.getQueueLength());
+        limiter.release(false);
+        assertTrue(queued.isDone());
+        assertFalse(queued.isCompletedExceptionally());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    public void testQueueTimeout() throws Exception {
+        limiter = new ElasticConcurrencyLimiter(1, 10, 10);
+        limiter.acquire();
+        CompletableFuture<Void> queued = limiter.acquire();
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, limiter.getQueueLength());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testQueueFull() {
+        limiter = new ElasticConcurrencyLimiter(1, 60000, 1);
+        limiter.acquire();
+        assertFalse(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isCompletedExceptionally());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testAdditiveIncreaseMultiplicativeDecrease() {
+        limiter = new ElasticConcurrencyLimiter(10, 60000, 10);
+        limiter.acquire();
+        limiter.release(true);
+        assertEquals(7, limiter.getLimit());
+        limiter.acquire();
+        limiter.release(true);
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertEquals(5, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertEquals(10, limiter.getLimit());
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testAbandon() {
+        limiter = new ElasticConcurrencyLimiter(1, 60000, 10);
+        CompletableFuture<Void> granted = limiter.acquire();
+        CompletableFuture<Void> queued = limiter.acquire();
+        limiter.abandon(queued);
+        assertTrue(queued.isCompletedExceptionally());
+        assertEquals(0, limiter.getQueueLength());
+        limiter.abandon(granted);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        limiter = new ElasticConcurrencyLimiter(1, 60000, 10);
+        CompletableFuture<Void> granted = limiter.acquire();
+        CompletableFuture<Void> queued = limiter.acquire();
+        limiter.close();
+        assertTrue(granted.isDone());
+        assertFalse(granted.isCompletedExceptionally());
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, limiter.getQueueLength());
+
+        CompletableFuture<Void> closed = limiter.acquire();
+        assertTrue(closed.isCompletedExceptionally());
+        assertEquals(0, limiter.getQueueLength());
+        limiter.release(false);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testBackoff() {
+        ElasticBackoff backoff = new ElasticBackoff(3, 100, 1000);
+        assertTrue(backoff.canRetry(2));
+        assertFalse(backoff.canRetry(3));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(backoff.getDelay(0) <= 100);
+            assertTrue(backoff.getDelay(2) <= 400);
+            assertTrue(backoff.getDelay(10) <= 1000);
+            assertTrue(backoff.getDelay(0) >= 0);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ElasticCountCacheTest {
+
+    private ElasticCountCache cache;
+
+    private ElasticRequest request;
+
+    @Before
+    public void setup() {
+        cache = new ElasticCountCache();
+        request = new ElasticRequest();
+        request.setQuery(ImmutableMap.of("match_all", Collections.EMPTY_MAP));
+        request.setFrom(10);
+        request.setSize(10);
+    }
+
+    @Test
+    public void testTakePage() throws IOException {
+        ElasticResponse response = mock(ElasticResponse.class);
+        when(response.getTotalNumHits()).thenReturn(25L);
+        cache.putPage("status_s", "active", request, response);
+        assertSame(response, cache.takePage("status_s", "active", request));
+        assertNull(cache.takePage("status_s", "active", request));
+    }
+
+    @Test
+    public void testTotalSharedAcrossPages() throws IOException {
+        ElasticResponse response = mock(ElasticResponse.class);
+        when(response.getTotalNumHits()).thenReturn(25L);
+        cache.putPage("status_s", "active", request, response);
+
+        ElasticRequest next = new ElasticRequest(request);
+        next.setFrom(20);
+        assertNull(cache.takePage("status_s", "active", next));
+        assertEquals(Long.valueOf(25), cache.getTotal("status_s", "active", next));
+        assertNull(cache.getTotal("status_s", "other", next));
+    }
+
+    @Test
+    public void testInvalidateAll() throws IOException {
+        cache.putTotal("status_s", "active", request, 25);
+        cache.invalidateAll();
+        assertNull(cache.getTotal("status_s", "active", request));
+    }
+
+}
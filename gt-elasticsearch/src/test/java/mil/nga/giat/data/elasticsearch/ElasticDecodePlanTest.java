@@ -0,0 +1,117 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
+
+public class ElasticDecodePlanTest {
+
+    private SimpleFeatureType featureType;
+
+    private ElasticParserUtil parserUtil;
+
+    @Before
+    public void setup() throws SchemaException {
+        featureType = ElasticFeatureTypeSupport.createType("test",
+                "_id:String,_score:Float,name:String,tags:String,date:java.util.Date,epoch:java.util.Date,geo:Point");
+        featureType.getDescriptor("name").getUserData().put(ElasticConstants.FULL_NAME, "properties.name");
+        featureType.getDescriptor("date").getUserData().put(ElasticConstants.DATE_FORMAT, "date_optional_time");
+        featureType.getDescriptor("epoch").getUserData().put(ElasticConstants.DATE_FORMAT, "epoch_millis||date_optional_time");
+        parserUtil = new ElasticParserUtil();
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(ElasticDecodePlan.get(featureType), ElasticDecodePlan.get(featureType));
+    }
+
+    @Test
+    public void testDecode() {
+        ElasticHit hit = new ElasticHit();
+        hit.setId("1");
+        hit.setSource(ImmutableMap.<String,Object>builder()
+                .put("properties", ImmutableMap.of("name", "test"))
+                .put("tags", ImmutableList.of("a", "b"))
+                .put("date", "2017-01-02T03:04:05Z")
+                .put("epoch", "1483326245000")
+                .put("geo", "40.5,-70.25")
+                .build());
+
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        ElasticDecodePlan.get(featureType).decode(hit, 2f, 0.5f, builder, parserUtil, ArrayEncoding.JSON);
+        SimpleFeature feature = builder.buildFeature("test.1");
+        assertEquals("1", feature.getAttribute("_id"));
+        assertEquals(2f, feature.getAttribute("_score"));
+        assertEquals("test", feature.getAttribute("name"));
+        assertEquals(ImmutableList.of("a", "b"), feature.getAttribute("tags"));
+        assertEquals(new Date(1483326245000L), feature.getAttribute("date"));
+        assertEquals(new Date(1483326245000L), feature.getAttribute("epoch"));
+        Point point = (Point) feature.getAttribute("geo");
+        assertEquals(-70.25, point.getX(), 1e-9);
+        assertEquals(40.5, point.getY(), 1e-9);
+    }
+
+    @Test
+    public void testDecodeCsv() {
+        ElasticHit hit = new ElasticHit();
+        hit.setId("1");
+        hit.setSource(ImmutableMap.of("tags", ImmutableList.of("a", "b")));
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        ElasticDecodePlan.get(featureType).decode(hit, null, null, builder, parserUtil, ArrayEncoding.CSV);
+        assertEquals("a", builder.buildFeature("test.1").getAttribute("tags"));
+    }
+
+    @Test
+    public void testDocValueDate() {
+        featureType.getDescriptor("date").getUserData().put(ElasticConstants.DOC_VALUES, true);
+        ElasticHit hit = new ElasticHit();
+        hit.setId("1");
+        hit.setFields(ImmutableMap.of("date", ImmutableList.of("1483326245000")));
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        new ElasticDecodePlan(featureType).decode(hit, null, null, builder, parserUtil, ArrayEncoding.JSON);
+        assertEquals(new Date(1483326245000L), builder.buildFeature("test.1").getAttribute("date"));
+    }
+
+    @Test
+    public void testDocValueFloat() throws SchemaException {
+        SimpleFeatureType floatType = ElasticFeatureTypeSupport.createType("test", "value:Float,values:Float");
+        floatType.getDescriptor("value").getUserData().put(ElasticConstants.DOC_VALUES, true);
+        floatType.getDescriptor("values").getUserData().put(ElasticConstants.DOC_VALUES, true);
+        ElasticHit hit = new ElasticHit();
+        hit.setId("1");
+        hit.setFields(ImmutableMap.of("value", ImmutableList.of(1.100000023841858),
+                "values", ImmutableList.of(1.100000023841858, 2.5)));
+        ElasticDecodePlan plan = new ElasticDecodePlan(floatType);
+        assertEquals(1.1f, plan.decode(0, hit, null, null, parserUtil, ArrayEncoding.JSON));
+        assertEquals(ImmutableList.of(1.1f, 2.5f), plan.decode(1, hit, null, null, parserUtil, ArrayEncoding.JSON));
+    }
+
+    @Test
+    public void testIsInteger() {
+        assertTrue(ElasticDecodePlan.isInteger("123"));
+        assertTrue(ElasticDecodePlan.isInteger("-123"));
+        assertFalse(ElasticDecodePlan.isInteger("-"));
+        assertFalse(ElasticDecodePlan.isInteger(""));
+        assertFalse(ElasticDecodePlan.isInteger("1.5"));
+        assertFalse(ElasticDecodePlan.isInteger("2017-01-01"));
+        assertFalse(ElasticDecodePlan.isInteger("12345678901234567890"));
+    }
+
+}
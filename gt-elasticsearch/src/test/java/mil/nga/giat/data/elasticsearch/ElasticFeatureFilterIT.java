@@ -17,10 +17,14 @@
 
 package mil.nga.giat.data.elasticsearch;
 
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
@@ -124,6 +128,27 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         assertEquals(44, Math.round(bounds.getMaxY()));
     }
 
+    @Test
+    public void testBoundsWithFilter() throws Exception {
+        init();
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo filter = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        Query query = new Query();
+        query.setFilter(filter);
+        ReferencedEnvelope bounds = featureSource.getBounds(query);
+        ReferencedEnvelope expected = new ReferencedEnvelope(bounds.getCoordinateReferenceSystem());
+        try (SimpleFeatureIterator iterator = featureSource.getFeatures(query).features()) {
+            while (iterator.hasNext()) {
+                expected.include(iterator.next().getBounds());
+            }
+        }
+        assertFalse(bounds.isNull());
+        assertEquals(expected.getMinX(), bounds.getMinX(), 1e-6);
+        assertEquals(expected.getMinY(), bounds.getMinY(), 1e-6);
+        assertEquals(expected.getMaxX(), bounds.getMaxX(), 1e-6);
+        assertEquals(expected.getMaxY(), bounds.getMaxY(), 1e-6);
+    }
+
     @Test
     public void testCountWithIsEqualFilter() throws Exception {
         init();
@@ -134,6 +159,18 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         assertEquals(4, featureSource.getCount(query));
     }
 
+    @Test
+    public void testCountOnNewFeatureSource() throws Exception {
+        init();
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo filter = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        Query query = new Query();
+        query.setFilter(filter);
+        ElasticFeatureSource source = new ElasticFeatureSource(featureSource.getEntry(), Query.ALL);
+        assertEquals(4, source.getCount(query));
+        assertEquals(11, new ElasticFeatureSource(featureSource.getEntry(), Query.ALL).getCount(Query.ALL));
+    }
+
     @Test
     public void testCountWithIsNotEqualFilter() throws Exception {
         init();
@@ -320,6 +357,88 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         }
     }
 
+    @Test
+    public void testGetReaderAsync() throws Exception {
+        init();
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo f = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        Query query = new Query(featureSource.getSchema().getTypeName(), f);
+        List<SimpleFeature> expected = readFeatures(featureSource.getFeatures(query).features());
+        assertFalse(expected.isEmpty());
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = featureSource.getReaderAsync(query)
+                .get(30, TimeUnit.SECONDS);
+        List<String> ids = new ArrayList<>();
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature feature = reader.next();
+                assertEquals("D-Link", feature.getAttribute("vendor_s"));
+                ids.add(feature.getID());
+            }
+        } finally {
+            reader.close();
+        }
+        List<String> expectedIds = new ArrayList<>();
+        for (SimpleFeature feature : expected) {
+            expectedIds.add(feature.getID());
+        }
+        Collections.sort(ids);
+        Collections.sort(expectedIds);
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    public void testGetReaderAsyncFailure() throws Exception {
+        init();
+        client.performRequest("DELETE", "/" + indexName, null);
+        try {
+            featureSource.getReaderAsync(Query.ALL).get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } finally {
+            createIndices();
+        }
+    }
+
+    @Test
+    public void testGetReaderAsyncWithSearchAfter() throws Exception {
+        init();
+        dataStore.setSearchAfterEnabled(true);
+        Query query = new Query();
+        query.setStartIndex(2);
+        try {
+            featureSource.getReaderAsync(query).get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test
+    public void testGetReaderAsyncWithResultCache() throws Exception {
+        init();
+        dataStore.setResultCacheSize(10000000l);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo f = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        Query query = new Query(featureSource.getSchema().getTypeName(), f);
+        for (int i = 0; i < 2; i++) {
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader = featureSource.getReaderAsync(query)
+                    .get(30, TimeUnit.SECONDS);
+            int count = 0;
+            try {
+                while (reader.hasNext()) {
+                    assertEquals("D-Link", reader.next().getAttribute("vendor_s"));
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(4, count);
+        }
+        assertTrue(dataStore.getResultCache().getHitCount() > 0);
+    }
+
     @Test
     public void testGetFeaturesWithSort() throws Exception {
         init();
@@ -563,6 +682,26 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         }
     }
 
+    @Test
+    public void testDocValuesWithSourceFiltering() throws Exception {
+        init();
+        dataStore.setSourceFilteringEnabled(true);
+        Name name = new NameImpl("active");
+        for (final ElasticAttribute attribute : dataStore.getElasticAttributes(name) ){
+            attribute.setUseDocValues(true);
+        }
+        featureSource = (ElasticFeatureSource) dataStore.getFeatureSource(TYPE_NAME);
+
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo f = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertFalse(features.isEmpty());
+        for (SimpleFeature feature : features) {
+            assertEquals("D-Link", feature.getAttribute("vendor_s"));
+            assertNotNull(feature.getAttribute("geo"));
+        }
+    }
+
     /**
      * This test ensures that when specifying properties in a query with source filtering enabled you only get back the
      * properties specified. If properties are not specified or Query.ALL_PROPERTIES is used then you get everything.
@@ -661,6 +800,43 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         assertEquals(8, features.size());
     }
 
+    @Test
+    public void testStreamingDoesntChangesOutputSize() throws Exception {
+        init();
+        dataStore.setStreamingEnabled(true);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsGreaterThan f = ff.greater(ff.property("nested.parent.child"), ff.literal("ba"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertEquals(8, features.size());
+    }
+
+    @Test
+    public void testResultCacheDoesntChangesOutputSize() throws Exception {
+        init();
+        dataStore.setResultCacheSize(10000000l);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsGreaterThan f = ff.greater(ff.property("nested.parent.child"), ff.literal("ba"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertEquals(8, features.size());
+        features = readFeatures(featureSource.getFeatures(f).features());
+        assertEquals(8, features.size());
+        assertTrue(dataStore.getResultCache().getHitCount() > 0);
+    }
+
+    @Test
+    public void testResponseFilteringDoesntChangesOutputSize() throws Exception {
+        init();
+        dataStore.setResponseFilteringEnabled(true);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo f = ff.equals(ff.property("vendor_s"), ff.literal("D-Link"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertFalse(features.isEmpty());
+        for (SimpleFeature feature : features) {
+            assertEquals("D-Link", feature.getAttribute("vendor_s"));
+            assertNotNull(feature.getAttribute("_index"));
+        }
+    }
+
     @Test
     public void testScrollSizesDoesntChangesOutputSize() throws Exception {
         init();
@@ -692,6 +868,60 @@ public class ElasticFeatureFilterIT extends ElasticTestSupport {
         assertEquals(8, features.size());
     }
 
+    @Test
+    public void testScrollPrefetchDoesntChangesOutputSize() throws Exception {
+        init();
+        dataStore.setScrollEnabled(true);
+        dataStore.setScrollSize(1l);
+        dataStore.setScrollPrefetchEnabled(true);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsGreaterThan f = ff.greater(ff.property("nested.parent.child"), ff.literal("ba"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertEquals(8, features.size());
+    }
+
+    @Test
+    public void testScrollPrefetchHonorsMaxFeatures() throws Exception {
+        init();
+        dataStore.setScrollEnabled(true);
+        dataStore.setScrollSize(1l);
+        dataStore.setScrollPrefetchEnabled(true);
+        Query q = new Query();
+        q.setMaxFeatures(3);
+        SimpleFeatureIterator it = featureSource.getFeatures(q).features();
+        assertTrue(it.hasNext());
+        it.next();
+        // close with a background fetch outstanding
+        it.close();
+
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(q).features());
+        assertEquals(3, features.size());
+    }
+
+    @Test
+    public void testSlicedScrollDoesntChangesOutputSize() throws Exception {
+        init();
+        dataStore.setScrollEnabled(true);
+        dataStore.setScrollSize(1l);
+        dataStore.setScrollSlices(2);
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsGreaterThan f = ff.greater(ff.property("nested.parent.child"), ff.literal("ba"));
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(f).features());
+        assertEquals(8, features.size());
+    }
+
+    @Test
+    public void testSlicedScrollHonorsMaxFeatures() throws Exception {
+        init();
+        dataStore.setScrollEnabled(true);
+        dataStore.setScrollSize(1l);
+        dataStore.setScrollSlices(2);
+        Query q = new Query();
+        q.setMaxFeatures(7);
+        List<SimpleFeature> features = readFeatures(featureSource.getFeatures(q).features());
+        assertEquals(7, features.size());
+    }
+
     @Test
     public void testScrollHonorsMaxFeatures() throws Exception {
         init();
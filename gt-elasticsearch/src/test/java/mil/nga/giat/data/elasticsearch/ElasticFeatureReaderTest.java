@@ -0,0 +1,142 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentState;
+import org.geotools.feature.SchemaException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.collect.ImmutableMap;
+
+import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
+
+public class ElasticFeatureReaderTest {
+
+    private ElasticDataStore dataStore;
+
+    private ContentState state;
+
+    private List<ElasticHit> hits;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setup() throws SchemaException {
+        SimpleFeatureType featureType = ElasticFeatureTypeSupport.createType("test", "name:String,value:Integer,geo:Point");
+        dataStore = mock(ElasticDataStore.class);
+        when(dataStore.getArrayEncoding()).thenReturn(ArrayEncoding.JSON);
+        ContentEntry entry = mock(ContentEntry.class);
+        when(entry.getDataStore()).thenReturn(dataStore);
+        when(entry.getTypeName()).thenReturn("test");
+        state = new ContentState(entry);
+        state.setFeatureType(featureType);
+
+        hits = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ElasticHit hit = new ElasticHit();
+            hit.setId(String.valueOf(i));
+            hit.setSource(ImmutableMap.of("name", "name" + i, "value", i, "geo", i % 90 + "," + i % 180));
+            hits.add(hit);
+        }
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        if (pool != null) {
+            pool.shutdownNow();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testParallelDecode() {
+        List<SimpleFeature> expected = new ArrayList<>();
+        ElasticFeatureReader reader = new ElasticFeatureReader(state, hits, null, 0);
+        while (reader.hasNext()) {
+            expected.add(reader.next());
+        }
+        reader.close();
+
+        pool = new ForkJoinPool(4);
+        when(dataStore.getDecodePool()).thenReturn(pool);
+        reader = new ElasticFeatureReader(state, hits, null, 0);
+        for (int i = 0; i < hits.size(); i++) {
+            assertTrue(reader.hasNext());
+            SimpleFeature feature = reader.next();
+            assertEquals("test." + i, feature.getID());
+            assertEquals(expected.get(i).getAttributes(), feature.getAttributes());
+            assertTrue(feature.getDefaultGeometry() instanceof Point);
+        }
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    @Test
+    public void testParallelDecodeSmallPage() {
+        pool = new ForkJoinPool(4);
+        when(dataStore.getDecodePool()).thenReturn(pool);
+        ElasticFeatureReader reader = new ElasticFeatureReader(state, hits.subList(0, 10), null, 0);
+        int count = 0;
+        while (reader.hasNext()) {
+            assertEquals("test." + count++, reader.next().getID());
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testCloseBeforeRead() throws InterruptedException {
+        ElasticMetrics metrics = new ElasticMetrics();
+        when(dataStore.getLayerMetrics("test")).thenReturn(metrics);
+        pool = new ForkJoinPool(1);
+        when(dataStore.getDecodePool()).thenReturn(pool);
+        // keep the only worker busy so no chunk starts before close
+        CountDownLatch latch = new CountDownLatch(1);
+        pool.submit(() -> {
+            latch.await();
+            return null;
+        });
+
+        ElasticFeatureReader reader = new ElasticFeatureReader(state, hits, null, 0);
+        assertTrue(reader.hasNext());
+        reader.close();
+        assertFalse(reader.hasNext());
+
+        latch.countDown();
+        assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+        assertEquals(0, metrics.getDecodeCount());
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDecodePoolShutdown() {
+        pool = new ForkJoinPool(4);
+        pool.shutdown();
+        when(dataStore.getDecodePool()).thenReturn(pool);
+        ElasticFeatureReader reader = new ElasticFeatureReader(state, hits, null, 0);
+        int count = 0;
+        while (reader.hasNext()) {
+            assertEquals("test." + count++, reader.next().getID());
+        }
+        assertEquals(hits.size(), count);
+        reader.close();
+    }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.SchemaException;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Feature types for tests decoding hits without a datastore.
+ */
+public class ElasticFeatureTypeSupport {
+
+    /**
+     * Create a feature type whose attributes are read from the document
+     * field of the same name.
+     *
+     * @param typeName Type name
+     * @param typeSpec Attribute specification (see
+     * {@link DataUtilities#createType(String, String)})
+     */
+    public static SimpleFeatureType createType(String typeName, String typeSpec) throws SchemaException {
+        final SimpleFeatureType featureType = DataUtilities.createType(typeName, typeSpec);
+        for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+            descriptor.getUserData().put(ElasticConstants.FULL_NAME, descriptor.getLocalName());
+        }
+        return featureType;
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ElasticGeometryCacheTest {
+
+    private ElasticGeometryCache cache;
+
+    private ElasticParserUtil parserUtil;
+
+    @Before
+    public void setup() {
+        cache = new ElasticGeometryCache(1024 * 1024);
+        parserUtil = new ElasticParserUtil();
+        parserUtil.setGeometryCache(cache);
+    }
+
+    private static Map<String,Object> createPolygon(double offset) {
+        final Map<String,Object> polygon = new LinkedHashMap<>();
+        polygon.put("type", "Polygon");
+        polygon.put("coordinates", ImmutableList.of(ImmutableList.of(
+                ImmutableList.of(offset, 0), ImmutableList.of(offset + 1, 0),
+                ImmutableList.of(offset + 1, 1), ImmutableList.of(offset, 0))));
+        return polygon;
+    }
+
+    @Test
+    public void testSharedGeometry() {
+        Geometry geometry = parserUtil.createGeometry(createPolygon(0));
+        assertTrue(geometry instanceof Polygon);
+        assertSame(geometry, parserUtil.createGeometry(createPolygon(0)));
+        assertNotSame(geometry, parserUtil.createGeometry(createPolygon(1)));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testFieldOrder() {
+        Map<String,Object> reversed = new LinkedHashMap<>();
+        reversed.put("coordinates", createPolygon(0).get("coordinates"));
+        reversed.put("type", "Polygon");
+        assertEquals(ElasticGeometryCache.hash(createPolygon(0)), ElasticGeometryCache.hash(reversed));
+        assertNotEquals(ElasticGeometryCache.hash(createPolygon(0)), ElasticGeometryCache.hash(createPolygon(1)));
+    }
+
+    @Test
+    public void testCacheable() {
+        assertTrue(ElasticGeometryCache.isCacheable(createPolygon(0)));
+        assertTrue(ElasticGeometryCache.isCacheable("LINESTRING (0 0, 1 1)"));
+        assertFalse(ElasticGeometryCache.isCacheable("POINT (0 0)"));
+        assertFalse(ElasticGeometryCache.isCacheable("40.5,-70.25"));
+        assertFalse(ElasticGeometryCache.isCacheable(ImmutableMap.of("type", "Point",
+                "coordinates", ImmutableList.of(0, 0))));
+        assertFalse(ElasticGeometryCache.isCacheable(ImmutableMap.of("lat", 0, "lon", 0)));
+        assertFalse(ElasticGeometryCache.isCacheable(ImmutableList.of(0, 0)));
+    }
+
+    @Test
+    public void testInvalidGeometryNotCached() {
+        assertNull(parserUtil.createGeometry(ImmutableMap.of("type", "unknown")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        cache = new ElasticGeometryCache(ElasticGeometryCache.weigh(parserUtil.createGeometry(createPolygon(0))));
+        parserUtil.setGeometryCache(cache);
+        for (int i = 0; i < 10; i++) {
+            parserUtil.createGeometry(createPolygon(i));
+        }
+        assertTrue(cache.size() < 10);
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ElasticHedgePolicyTest {
+
+    @Test
+    public void testNoDelayWithoutSamples() {
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(95, 10);
+        assertEquals(-1, policy.getDelay());
+        for (int i = 0; i < 19; i++) {
+            policy.record(100);
+        }
+        assertEquals(-1, policy.getDelay());
+        policy.record(100);
+        assertEquals(100, policy.getDelay());
+    }
+
+    @Test
+    public void testPercentile() {
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(95, 1);
+        for (int i = 20; i >= 1; i--) {
+            policy.record(i);
+        }
+        assertEquals(19, policy.getDelay());
+
+        policy = new ElasticHedgePolicy(50, 1);
+        for (int i = 20; i >= 1; i--) {
+            policy.record(i);
+        }
+        assertEquals(10, policy.getDelay());
+    }
+
+    @Test
+    public void testMinDelay() {
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(95, 10);
+        for (int i = 0; i < 20; i++) {
+            policy.record(1);
+        }
+        assertEquals(10, policy.getDelay());
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(50, 1);
+        for (int i = 0; i < 1000; i++) {
+            policy.record(1000);
+        }
+        assertEquals(1000, policy.getDelay());
+        for (int i = 0; i < 1000; i++) {
+            policy.record(10);
+        }
+        assertEquals(10, policy.getDelay());
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import mil.nga.giat.data.elasticsearch.ElasticMappings.Mapping;
+
+public class ElasticMetadataCacheTest {
+
+    private ElasticMetadataCache cache;
+
+    private AtomicInteger loads;
+
+    private Map<String,Mapping> mappings;
+
+    @Before
+    public void setup() {
+        cache = new ElasticMetadataCache();
+        loads = new AtomicInteger();
+        mappings = ImmutableMap.of("active", new Mapping());
+    }
+
+    @Test
+    public void testMappingsCached() throws IOException {
+        assertEquals(mappings, cache.getMappings("index", "active", loader(mappings)));
+        assertEquals(mappings, cache.getMappings("index", "active", loader(mappings)));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(mappings, cache.getMappingsIfPresent("index", "active"));
+        assertNull(cache.getMappingsIfPresent("index", null));
+    }
+
+    @Test
+    public void testEmptyMappingsNotCached() throws IOException {
+        final Map<String,Mapping> empty = Collections.emptyMap();
+        cache.getMappings("index", null, loader(empty));
+        cache.getMappings("index", null, loader(empty));
+        assertEquals(2, loads.get());
+        cache.putMappings("index", null, empty);
+        assertNull(cache.getMappingsIfPresent("index", null));
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        cache = new ElasticMetadataCache(0, TimeUnit.SECONDS);
+        cache.getMappings("index", "active", loader(mappings));
+        cache.getMappings("index", "active", loader(mappings));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        cache.getMappings("index", "active", loader(mappings));
+        cache.getMappings("index", null, loader(mappings));
+        cache.getMappings("index2", "active", loader(mappings));
+        cache.getIndices("index", loader(ImmutableSet.of("index_1")));
+        cache.invalidate("index");
+        assertNull(cache.getMappingsIfPresent("index", "active"));
+        assertNull(cache.getMappingsIfPresent("index", null));
+        assertNotNull(cache.getMappingsIfPresent("index2", "active"));
+        cache.getIndices("index", loader(ImmutableSet.of("index_1")));
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    public void testVersion() throws IOException {
+        assertEquals(6.4, cache.getVersion(loader(6.4)), 1e-9);
+        assertEquals(6.4, cache.getVersion(loader(5.0)), 1e-9);
+        cache.invalidate("index");
+        assertEquals(6.4, cache.getVersion(loader(5.0)), 1e-9);
+        cache.invalidateAll();
+        assertEquals(5.0, cache.getVersion(loader(5.0)), 1e-9);
+    }
+
+    @Test(expected=IOException.class)
+    public void testLoadFailure() throws IOException {
+        cache.getMappings("index", "active", () -> {
+            throw new IOException();
+        });
+    }
+
+    private <T> Callable<T> loader(T value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+}
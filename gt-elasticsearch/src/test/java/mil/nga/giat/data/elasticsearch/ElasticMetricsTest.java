@@ -0,0 +1,95 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class ElasticMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        ElasticHistogram histogram = new ElasticHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(100, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50 && p50 < 100);
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testHistogramZero() {
+        ElasticHistogram histogram = new ElasticHistogram();
+        histogram.record(0);
+        histogram.record(-1);
+        assertEquals(0, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testMetrics() {
+        ElasticMetrics metrics = new ElasticMetrics();
+        metrics.recordRequest(TimeUnit.MILLISECONDS.toNanos(20), false);
+        metrics.recordRequest(TimeUnit.MILLISECONDS.toNanos(40), true);
+        metrics.recordQuery(false);
+        metrics.recordQuery(false);
+        metrics.recordQuery(false);
+        metrics.recordQuery(true);
+        metrics.recordDecode(TimeUnit.MICROSECONDS.toNanos(5));
+        metrics.recordResponseBytes(100);
+        metrics.recordScrollPage();
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(1, metrics.getRequestErrorCount());
+        assertEquals(30000, metrics.getRequestLatencyMean(), 1e-9);
+        assertEquals(40000, metrics.getRequestLatencyMax());
+        assertEquals(0.25, metrics.getPostFilteredRatio(), 1e-9);
+        assertEquals(1, metrics.getDecodeCount());
+        assertEquals(5, metrics.getDecodeTimeMean(), 1e-9);
+        assertEquals(100, metrics.getResponseBytes());
+        assertEquals(1, metrics.getScrollPageCount());
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount());
+        assertEquals(0, metrics.getPostFilteredRatio(), 1e-9);
+    }
+
+    @Test
+    public void testSubMicrosecondDecode() {
+        ElasticMetrics metrics = new ElasticMetrics();
+        metrics.recordDecode(400);
+        metrics.recordDecode(600);
+        assertEquals(2, metrics.getDecodeCount());
+        assertEquals(0.5, metrics.getDecodeTimeMean(), 1e-9);
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        ElasticMetrics metrics = new ElasticMetrics();
+        ObjectName name = new ObjectName(ElasticMetrics.DOMAIN + ":type=Test,name=" + ObjectName.quote("test"));
+        metrics.register(name);
+        try {
+            metrics.recordQuery(true);
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "PostFilteredQueryCount"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertNull(metrics.getObjectName());
+    }
+
+}
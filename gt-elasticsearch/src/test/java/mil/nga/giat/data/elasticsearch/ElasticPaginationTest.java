@@ -0,0 +1,198 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import mil.nga.giat.data.elasticsearch.ElasticPagination.Mode;
+
+public class ElasticPaginationTest {
+
+    private ElasticClient client;
+
+    private ElasticPagination pagination;
+
+    @Before
+    public void setup() {
+        client = mock(ElasticClient.class);
+        when(client.getVersion()).thenReturn(6.4);
+        pagination = new ElasticPagination();
+    }
+
+    @Test
+    public void testSelectMode() {
+        assertEquals(Mode.FROM_SIZE, ElasticPagination.selectMode(0, 10, 10000, false));
+        assertEquals(Mode.FROM_SIZE, ElasticPagination.selectMode(9990, 10, 10000, false));
+        assertEquals(Mode.SEARCH_AFTER, ElasticPagination.selectMode(20, 10, 10000, true));
+        assertEquals(Mode.SEARCH_AFTER, ElasticPagination.selectMode(20000, 10, 10000, true));
+        assertEquals(Mode.SCROLL, ElasticPagination.selectMode(9995, 10, 10000, false));
+    }
+
+    @Test
+    public void testTiebreaker() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 1, 2));
+        ElasticRequest request = createRequest(0, 2);
+        pagination.search(client, "index", "type", request, 10000, null);
+        assertEquals(ImmutableList.of(ImmutableMap.of("_id", ImmutableMap.of("order", "asc"))), getLastRequest().getSorts());
+        // the caller's request is not modified
+        assertTrue(request.getSorts().isEmpty());
+        assertEquals(Integer.valueOf(0), request.getFrom());
+
+        when(client.getVersion()).thenReturn(5.6);
+        pagination.search(client, "index", "type", createRequest(0, 2), 10000, null);
+        assertEquals(ImmutableList.of(ImmutableMap.of("_uid", ImmutableMap.of("order", "asc"))), getLastRequest().getSorts());
+
+        request = createRequest(0, 2);
+        request.addSort("_uid", "desc");
+        pagination.search(client, "index", "type", request, 10000, null);
+        assertEquals(1, getLastRequest().getSorts().size());
+    }
+
+    @Test
+    public void testConfiguredTiebreaker() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 1, 2));
+        pagination.setTiebreaker("uuid");
+        pagination.search(client, "index", "type", createRequest(0, 2), 10000, null);
+        assertEquals(ImmutableList.of(ImmutableMap.of("uuid", ImmutableMap.of("order", "asc"))), getLastRequest().getSorts());
+
+        ElasticRequest request = createRequest(0, 2);
+        request.addSort("uuid", "desc");
+        pagination.search(client, "index", "type", request, 10000, null);
+        assertEquals(1, getLastRequest().getSorts().size());
+
+        pagination.setTiebreaker(" ");
+        assertNull(pagination.getTiebreaker());
+    }
+
+    @Test
+    public void testSearchAfter() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 1, 2));
+        pagination.search(client, "index", "type", createRequest(0, 2), 10000, null);
+        assertEquals(1, pagination.getCursorCount());
+
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 3, 4));
+        ElasticResponse response = pagination.search(client, "index", "type", createRequest(2, 2), 10000, null);
+        assertEquals("3", response.getHits().get(0).getId());
+
+        ArgumentCaptor<ElasticRequest> captor = ArgumentCaptor.forClass(ElasticRequest.class);
+        verify(client, times(2)).search(eq("index"), eq("type"), captor.capture());
+        assertNull(captor.getValue().getFrom());
+        assertEquals(ImmutableList.of("2"), captor.getValue().getSearchAfter());
+    }
+
+    @Test
+    public void testNoCursorForPartialPage() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 1));
+        pagination.search(client, "index", "type", createRequest(0, 2), 10000, null);
+        assertEquals(0, pagination.getCursorCount());
+    }
+
+    @Test
+    public void testDifferentQueryDoesNotUseCursor() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse(null, 1, 2));
+        pagination.search(client, "index", "type", createRequest(0, 2), 10000, null);
+
+        ElasticRequest request = createRequest(2, 2);
+        request.setQuery(ImmutableMap.of("term", ImmutableMap.of("key", "value")));
+        pagination.search(client, "index", "type", request, 10000, null);
+
+        ArgumentCaptor<ElasticRequest> captor = ArgumentCaptor.forClass(ElasticRequest.class);
+        verify(client, times(2)).search(eq("index"), eq("type"), captor.capture());
+        assertEquals(Integer.valueOf(2), captor.getValue().getFrom());
+        assertNull(captor.getValue().getSearchAfter());
+    }
+
+    @Test
+    public void testScroll() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class)))
+                .thenReturn(createResponse("s1", 1, 2))
+                .thenReturn(createResponse(null, 4, 5, 6));
+        when(client.scroll("s1", 60)).thenReturn(createResponse("s1", 3, 4));
+        ElasticRequest request = createRequest(3, 3);
+        request.addSourceInclude("name");
+        ElasticResponse response = pagination.search(client, "index", "type", request, 2, null);
+
+        assertEquals(3, response.getNumHits());
+        assertEquals("4", response.getHits().get(0).getId());
+        assertEquals("6", response.getHits().get(2).getId());
+        verify(client).clearScroll(ImmutableSet.of("s1"));
+
+        ArgumentCaptor<ElasticRequest> captor = ArgumentCaptor.forClass(ElasticRequest.class);
+        verify(client, times(2)).search(eq("index"), eq("type"), captor.capture());
+        // skipped hits are read without their source
+        ElasticRequest skipRequest = captor.getAllValues().get(0);
+        assertEquals(Integer.valueOf(60), skipRequest.getScroll());
+        assertEquals(Integer.valueOf(2), skipRequest.getSize());
+        assertNull(skipRequest.getFrom());
+        assertEquals(Boolean.FALSE, skipRequest.getSourceEnabled());
+        assertTrue(skipRequest.getSourceIncludes().isEmpty());
+        assertEquals(ImmutableList.of("_none_"), skipRequest.getFields());
+
+        ElasticRequest pageRequest = captor.getAllValues().get(1);
+        assertNull(pageRequest.getScroll());
+        assertNull(pageRequest.getFrom());
+        assertNull(pageRequest.getSourceEnabled());
+        assertEquals(ImmutableList.of("name"), pageRequest.getSourceIncludes());
+        assertEquals(ImmutableList.of("3"), pageRequest.getSearchAfter());
+
+        // cursors recorded for requested offset and following page
+        assertEquals(2, pagination.getCursorCount());
+    }
+
+    @Test
+    public void testScrollPastLastHit() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenReturn(createResponse("s1", 1, 2));
+        when(client.scroll("s1", 60)).thenReturn(createResponse("s1"));
+        ElasticResponse response = pagination.search(client, "index", "type", createRequest(5, 3), 2, null);
+
+        assertEquals(0, response.getNumHits());
+        verify(client).search(eq("index"), eq("type"), any(ElasticRequest.class));
+        verify(client).clearScroll(ImmutableSet.of("s1"));
+    }
+
+    private ElasticRequest getLastRequest() throws IOException {
+        ArgumentCaptor<ElasticRequest> captor = ArgumentCaptor.forClass(ElasticRequest.class);
+        verify(client, atLeastOnce()).search(eq("index"), eq("type"), captor.capture());
+        return captor.getValue();
+    }
+
+    private ElasticRequest createRequest(int from, int size) {
+        final ElasticRequest request = new ElasticRequest();
+        request.setFrom(from);
+        request.setSize(size);
+        return request;
+    }
+
+    private ElasticResponse createResponse(String scrollId, int... ids) {
+        final List<ElasticHit> hits = new ArrayList<>();
+        for (int id : ids) {
+            final ElasticHit hit = new ElasticHit();
+            hit.setId(String.valueOf(id));
+            hit.setSort(ImmutableList.of(String.valueOf(id)));
+            hits.add(hit);
+        }
+        final ElasticResults results = new ElasticResults();
+        results.setTotal(100l);
+        results.setHits(hits);
+        final ElasticResponse response = new ElasticResponse();
+        response.setResults(results);
+        response.setScrollId(scrollId);
+        return response;
+    }
+
+}
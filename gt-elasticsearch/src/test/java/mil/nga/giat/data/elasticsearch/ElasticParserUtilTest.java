@@ -29,6 +29,9 @@ import org.locationtech.jts.geom.MultiPoint;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -217,6 +220,21 @@ public class ElasticParserUtilTest {
         assertTrue(parserUtil.createGeometry(rgb.toMap(geom)).equalsExact(geom, 1e-9));
     }
 
+    @Test
+    public void testGeoShapePolygonPackedCoordinates() throws JsonParseException, JsonMappingException, IOException {
+        Polygon geom = rgb.createRandomPolygon();
+        Polygon polygon = (Polygon) parserUtil.createGeometry(rgb.toMap(geom));
+        assertTrue(polygon.getExteriorRing().getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+
+        parserUtil = new ElasticParserUtil(PackedCoordinateSequenceFactory.FLOAT_FACTORY);
+        polygon = (Polygon) parserUtil.createGeometry(rgb.toMap(geom));
+        assertTrue(polygon.getExteriorRing().getCoordinateSequence() instanceof PackedCoordinateSequence.Float);
+        assertTrue(polygon.equalsExact(geom, 1e-4));
+
+        parserUtil = new ElasticParserUtil(CoordinateArraySequenceFactory.instance());
+        assertTrue(parserUtil.createGeometry(rgb.toMap(geom)).equalsExact(geom, 1e-9));
+    }
+
     @Test
     public void testGeoShapeCircle() throws JsonParseException, JsonMappingException, IOException {
         Map<String, Object> inputMap = new HashMap<>();
@@ -453,4 +471,57 @@ public class ElasticParserUtilTest {
         Assert.assertEquals(properties.get("coalesceentity.geo"), values.get(0));
     }
 
+    @Test
+    public void testReadGeoPoint() {
+        double[] coordinates = new double[2];
+        assertTrue(parserUtil.readGeoPoint("40.5,-70.25", coordinates));
+        assertEquals(-70.25, coordinates[0], 1e-9);
+        assertEquals(40.5, coordinates[1], 1e-9);
+        assertTrue(parserUtil.readGeoPoint(Arrays.asList(-70.25, 40.5), coordinates));
+        assertEquals(-70.25, coordinates[0], 1e-9);
+        assertEquals(40.5, coordinates[1], 1e-9);
+        Map<String,Object> point = new HashMap<>();
+        point.put("lat", 40.5);
+        point.put("lon", -70.25);
+        assertTrue(parserUtil.readGeoPoint(point, coordinates));
+        assertEquals(-70.25, coordinates[0], 1e-9);
+        assertEquals(40.5, coordinates[1], 1e-9);
+        assertTrue(parserUtil.readGeoPoint(GeoHash.encodeHash(40.5, -70.25), coordinates));
+        assertEquals(-70.25, coordinates[0], 1e-3);
+        assertEquals(40.5, coordinates[1], 1e-3);
+        point.put("type", "point");
+        assertFalse(parserUtil.readGeoPoint(point, coordinates));
+        assertFalse(parserUtil.readGeoPoint("POINT (1 2)", coordinates));
+    }
+
+    @Test
+    public void testParseGeoPoint() {
+        double[] coordinates = new double[2];
+        assertTrue(ElasticParserUtil.parseGeoPoint(" 40.5 , -70.25 ", coordinates));
+        assertEquals(-70.25, coordinates[0], 0);
+        assertEquals(40.5, coordinates[1], 0);
+        assertTrue(ElasticParserUtil.parseGeoPoint("+1.;-.5", coordinates));
+        assertEquals(-0.5, coordinates[0], 0);
+        assertEquals(1, coordinates[1], 0);
+        assertFalse(ElasticParserUtil.parseGeoPoint("40.5", coordinates));
+        assertFalse(ElasticParserUtil.parseGeoPoint(",", coordinates));
+        assertFalse(ElasticParserUtil.parseGeoPoint("40.5,-70.25x", coordinates));
+        assertFalse(ElasticParserUtil.parseGeoPoint("1.2.3,4", coordinates));
+        assertFalse(ElasticParserUtil.parseGeoPoint("u4pruydqqvj", coordinates));
+    }
+
+    @Test
+    public void testParseNumber() {
+        for (String value : new String[] { "0", "-0", "1", "-70.25", "0.1", "123456789.123456", "0.30000000000000004",
+                "1234567890123456789", "1e3", "-2.5E-3", "0.0000000000000000000000001" }) {
+            int end = ElasticParserUtil.scanNumber(value, 0, true);
+            assertEquals(value, value.length(), end);
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+                    Double.doubleToLongBits(ElasticParserUtil.parseNumber(value, 0, end)));
+        }
+        assertEquals(0, ElasticParserUtil.scanNumber("-.", 0, true));
+        assertEquals(1, ElasticParserUtil.scanNumber("1e", 0, true));
+        assertEquals(1, ElasticParserUtil.scanNumber("1e3", 0, false));
+    }
+
 }
@@ -0,0 +1,106 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ElasticResponseStreamTest {
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setup() {
+        mapper = new ObjectMapper();
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ElasticResponseStream stream = createStream("{}");
+        assertFalse(stream.hasNext());
+        assertEquals(0, stream.getTotalNumHits());
+        assertEquals(0, stream.getMaxScore(), 1e-9);
+        assertNull(stream.getScrollId());
+        assertNull(stream.getAggregations());
+    }
+
+    @Test
+    public void testMetadata() throws IOException {
+        ElasticResponseStream stream = createStream("{\"_scroll_id\":\"12345\",\"took\":5,\"_shards\":{\"total\":1},"
+                + "\"hits\":{\"total\":10,\"max_score\":0.8,\"hits\":[]}}");
+        assertEquals("12345", stream.getScrollId());
+        assertEquals(10, stream.getTotalNumHits());
+        assertEquals(0.8, stream.getMaxScore(), 1e-6);
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testNullMaxScore() throws IOException {
+        ElasticResponseStream stream = createStream("{\"hits\":{\"total\":10,\"max_score\":null,\"hits\":[]}}");
+        assertEquals(0, stream.getMaxScore(), 1e-9);
+    }
+
+    @Test
+    public void testHits() throws IOException {
+        ElasticResponseStream stream = createStream("{\"hits\":{\"total\":2,\"hits\":["
+                + "{\"_id\":\"1\",\"_index\":\"test\",\"_source\":{\"tags\":[\"red\"]}},"
+                + "{\"_id\":\"2\",\"fields\":{\"tags\":[\"blue\"]}}]}}");
+        assertTrue(stream.hasNext());
+        ElasticHit hit = stream.next();
+        assertEquals("1", hit.getId());
+        assertEquals("test", hit.getIndex());
+        assertEquals(ImmutableList.of("red"), hit.getSource().get("tags"));
+        assertTrue(stream.hasNext());
+        hit = stream.next();
+        assertEquals("2", hit.getId());
+        assertEquals(ImmutableList.of("blue"), hit.field("tags"));
+        assertFalse(stream.hasNext());
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testNextWithoutHits() throws IOException {
+        createStream("{\"hits\":{\"hits\":[]}}").next();
+    }
+
+    @Test
+    public void testAggregationsAfterHits() throws IOException {
+        ElasticResponseStream stream = createStream("{\"hits\":{\"hits\":[{\"_id\":\"1\"}],\"extra\":{\"a\":[1]}},"
+                + "\"aggregations\":{\"first\":{\"buckets\": [{\"key\":\"0\",\"doc_count\":10}]}}}");
+        assertNull(stream.getAggregations());
+        assertEquals("1", stream.next().getId());
+        assertFalse(stream.hasNext());
+        assertEquals(1, stream.getAggregations().size());
+        assertEquals(ImmutableMap.of("key","0","doc_count",10), stream.getAggregations().get("first").getBuckets().get(0));
+    }
+
+    @Test(expected=IOException.class)
+    public void testInvalidContent() throws IOException {
+        createStream("[]");
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        ElasticResponseStream stream = createStream("{\"hits\":{\"hits\":[{\"_id\":\"1\"},{\"_id\":\"2\"}]}}");
+        assertTrue(stream.hasNext());
+        stream.next();
+        stream.close();
+        assertFalse(stream.hasNext());
+    }
+
+    private ElasticResponseStream createStream(String content) throws IOException {
+        return new ElasticResponseStream(mapper, new ByteArrayInputStream(content.getBytes()));
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ElasticResultCacheTest {
+
+    private ElasticClient client;
+
+    private ElasticResultCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        client = mock(ElasticClient.class);
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenAnswer(invocation -> createResponse(10));
+        cache = new ElasticResultCache(10000000, 60, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCached() throws IOException {
+        ElasticResponse first = cache.search(client, "index", "type", createRequest(10));
+        ElasticResponse second = cache.search(client, "index", "type", createRequest(10));
+        assertSame(first, second);
+        verify(client, times(1)).search(eq("index"), eq("type"), any(ElasticRequest.class));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testCachedMetrics() throws IOException {
+        ElasticMetrics metrics = new ElasticMetrics();
+        cache.search(client, "index", "type", createRequest(10), metrics);
+        cache.search(client, "index", "type", createRequest(10), metrics);
+        assertEquals(1, metrics.getCacheHitCount());
+        assertEquals(1, metrics.getCacheMissCount());
+        assertEquals(0.5, metrics.getCacheHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testCachedAsync() throws Exception {
+        when(client.searchAsync(eq("index"), eq("type"), any(ElasticRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(createResponse(10)));
+        ElasticMetrics metrics = new ElasticMetrics();
+        ElasticResponse first = cache.searchAsync(client, "index", "type", createRequest(10), metrics).get();
+        ElasticResponse second = cache.searchAsync(client, "index", "type", createRequest(10), metrics).get();
+        assertSame(first, second);
+        assertSame(first, cache.search(client, "index", "type", createRequest(10)));
+        verify(client, times(1)).searchAsync(eq("index"), eq("type"), any(ElasticRequest.class));
+        verify(client, never()).search(eq("index"), eq("type"), any(ElasticRequest.class));
+        assertEquals(1, metrics.getCacheHitCount());
+        assertEquals(1, metrics.getCacheMissCount());
+    }
+
+    @Test
+    public void testDifferentRequest() throws IOException {
+        cache.search(client, "index", "type", createRequest(10));
+        cache.search(client, "index", "type", createRequest(20));
+        ElasticRequest request = createRequest(10);
+        request.setFrom(10);
+        cache.search(client, "index", "type", request);
+        verify(client, times(3)).search(eq("index"), eq("type"), any(ElasticRequest.class));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testKeyIgnoresMapOrder() throws IOException {
+        Map<String,Object> first = new LinkedHashMap<>();
+        first.put("a", 1);
+        first.put("b", ImmutableMap.of("c", 2));
+        Map<String,Object> second = new LinkedHashMap<>();
+        second.put("b", ImmutableMap.of("c", 2));
+        second.put("a", 1);
+        ElasticRequest request = createRequest(10);
+        request.setQuery(first);
+        String key = cache.getKey("index", "type", request);
+        request.setQuery(second);
+        assertEquals(key, cache.getKey("index", "type", request));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        int weight = ElasticResultCache.weigh("", createResponse(10));
+        cache = new ElasticResultCache(weight * 3, 60, TimeUnit.SECONDS);
+        for (int i = 0; i < 10; i++) {
+            cache.search(client, "index", "type", createRequest(i));
+        }
+        assertTrue(cache.size() < 10);
+        assertTrue(cache.getStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void testWeigh() {
+        assertTrue(ElasticResultCache.weigh("", createResponse(20)) > ElasticResultCache.weigh("", createResponse(10)));
+    }
+
+    @Test(expected=IOException.class)
+    public void testSearchFailure() throws IOException {
+        when(client.search(eq("index"), eq("type"), any(ElasticRequest.class))).thenThrow(new IOException());
+        cache.search(client, "index", "type", createRequest(10));
+    }
+
+    @Test
+    public void testInvalidateAll() throws IOException {
+        cache.search(client, "index", "type", createRequest(10));
+        cache.invalidateAll();
+        cache.search(client, "index", "type", createRequest(10));
+        verify(client, times(2)).search(eq("index"), eq("type"), any(ElasticRequest.class));
+    }
+
+    private ElasticRequest createRequest(int size) {
+        final ElasticRequest request = new ElasticRequest();
+        request.setSize(size);
+        request.setQuery(ImmutableMap.of("match_all", new HashMap<>()));
+        return request;
+    }
+
+    private ElasticResponse createResponse(int numHits) {
+        final List<ElasticHit> hits = new ArrayList<>();
+        for (int i = 0; i < numHits; i++) {
+            final ElasticHit hit = new ElasticHit();
+            hit.setId(String.valueOf(i));
+            hit.setSource(ImmutableMap.of("name", "feature" + i, "value", i));
+            hits.add(hit);
+        }
+        final ElasticResults results = new ElasticResults();
+        results.setHits(hits);
+        final ElasticResponse response = new ElasticResponse();
+        response.setResults(results);
+        return response;
+    }
+
+}
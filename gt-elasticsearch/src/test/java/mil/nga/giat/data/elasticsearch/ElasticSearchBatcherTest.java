@@ -0,0 +1,119 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.giat.data.elasticsearch.ElasticSearchBatcher.SearchTask;
+
+public class ElasticSearchBatcherTest {
+
+    private List<List<SearchTask>> batches;
+
+    private ElasticSearchBatcher batcher;
+
+    @Before
+    public void setup() {
+        batches = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void teardown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    public void testBatchWithinWindow() throws Exception {
+        batcher = new ElasticSearchBatcher(50, 10, this::complete);
+        CompletableFuture<ElasticResponse> first = batcher.submit("index1", "type", Collections.emptyMap());
+        CompletableFuture<ElasticResponse> second = batcher.submit("index2", "type", Collections.emptyMap());
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("index1", batches.get(0).get(0).getSearchIndices());
+        assertEquals("index2", batches.get(0).get(1).getSearchIndices());
+    }
+
+    @Test
+    public void testMaxBatchSize() throws Exception {
+        batcher = new ElasticSearchBatcher(60000, 2, this::complete);
+        CompletableFuture<ElasticResponse> first = batcher.submit("index1", "type", Collections.emptyMap());
+        assertFalse(first.isDone());
+        CompletableFuture<ElasticResponse> second = batcher.submit("index2", "type", Collections.emptyMap());
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+    }
+
+    @Test
+    public void testMaxBatchSizeCancelsWindow() throws Exception {
+        batcher = new ElasticSearchBatcher(400, 2, this::complete);
+        batcher.submit("index1", "type", Collections.emptyMap());
+        batcher.submit("index2", "type", Collections.emptyMap());
+        assertEquals(1, batches.size());
+        Thread.sleep(200);
+        CompletableFuture<ElasticResponse> third = batcher.submit("index3", "type", Collections.emptyMap());
+        // the window of the first batch must not dispatch the next one
+        Thread.sleep(300);
+        assertFalse(third.isDone());
+        assertNotNull(third.get(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        batcher = new ElasticSearchBatcher(60000, 10, this::complete);
+        CompletableFuture<ElasticResponse> future = batcher.submit("index", "type", Collections.emptyMap());
+        batcher.flush();
+        assertTrue(future.isDone());
+        batcher.flush();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        batcher = new ElasticSearchBatcher(60000, 10, this::complete);
+        CompletableFuture<ElasticResponse> future = batcher.submit("index", "type", Collections.emptyMap());
+        batcher.close();
+        assertTrue(future.isDone());
+        assertTrue(batcher.submit("index", "type", Collections.emptyMap()).isDone());
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void testDispatchFailure() throws Exception {
+        batcher = new ElasticSearchBatcher(60000, 1, batch -> {
+            throw new IllegalStateException();
+        });
+        CompletableFuture<ElasticResponse> future = batcher.submit("index", "type", Collections.emptyMap());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private void complete(List<SearchTask> batch) {
+        batches.add(batch);
+        batch.forEach(task -> task.getFuture().complete(new ElasticResponse()));
+    }
+
+}
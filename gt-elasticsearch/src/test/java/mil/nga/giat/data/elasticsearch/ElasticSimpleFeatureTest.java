@@ -0,0 +1,131 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.geometry.BoundingBox;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import mil.nga.giat.data.elasticsearch.ElasticAttribute.ElasticGeometryType;
+import mil.nga.giat.data.elasticsearch.ElasticDataStore.ArrayEncoding;
+
+public class ElasticSimpleFeatureTest {
+
+    private SimpleFeatureType featureType;
+
+    private ElasticParserUtil parserUtil;
+
+    private ElasticHit hit;
+
+    @Before
+    public void setup() throws SchemaException {
+        featureType = ElasticFeatureTypeSupport.createType("test",
+                "_id:String,_score:Float,name:String,tags:String,date:java.util.Date,geo:Point");
+        featureType.getDescriptor("date").getUserData().put(ElasticConstants.DATE_FORMAT, "date_optional_time");
+        featureType.getDescriptor("geo").getUserData().put(ElasticConstants.GEOMETRY_TYPE, ElasticGeometryType.GEO_POINT);
+        parserUtil = new ElasticParserUtil();
+
+        hit = new ElasticHit();
+        hit.setId("1");
+        hit.setSource(ImmutableMap.<String,Object>builder()
+                .put("name", "test")
+                .put("tags", ImmutableList.of("a", "b"))
+                .put("date", "2017-01-02T03:04:05Z")
+                .put("geo", ImmutableMap.of("lat", 40.5, "lon", -70.25))
+                .build());
+    }
+
+    private SimpleFeature createFeature() {
+        return new ElasticSimpleFeature(featureType, "test.1", hit, 2f, 0.5f, ElasticDecodePlan.get(featureType),
+                parserUtil, ArrayEncoding.JSON);
+    }
+
+    @Test
+    public void testGetAttribute() {
+        SimpleFeature feature = createFeature();
+        assertEquals("test.1", feature.getID());
+        assertEquals("1", feature.getAttribute("_id"));
+        assertEquals(2f, feature.getAttribute(1));
+        assertEquals("test", feature.getAttribute("name"));
+        assertEquals(ImmutableList.of("a", "b"), feature.getAttribute("tags"));
+        assertEquals(new Date(1483326245000L), feature.getAttribute("date"));
+        Point point = (Point) feature.getDefaultGeometry();
+        assertEquals(-70.25, point.getX(), 1e-9);
+        assertEquals(40.5, point.getY(), 1e-9);
+        assertNull(feature.getAttribute("missing"));
+    }
+
+    @Test
+    public void testEqualsEagerFeature() {
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        ElasticDecodePlan.get(featureType).decode(hit, 2f, 0.5f, builder, parserUtil, ArrayEncoding.JSON);
+        SimpleFeature expected = builder.buildFeature("test.1");
+        SimpleFeature feature = createFeature();
+        assertEquals(expected.getAttributes(), feature.getAttributes());
+        assertEquals(createFeature(), feature);
+        assertEquals(createFeature().hashCode(), feature.hashCode());
+    }
+
+    @Test
+    public void testBounds() {
+        SimpleFeature feature = createFeature();
+        BoundingBox bounds = feature.getBounds();
+        assertEquals(-70.25, bounds.getMinX(), 1e-9);
+        assertEquals(-70.25, bounds.getMaxX(), 1e-9);
+        assertEquals(40.5, bounds.getMinY(), 1e-9);
+        assertEquals(40.5, bounds.getMaxY(), 1e-9);
+        assertEquals(bounds, createFeature().getDefaultGeometryProperty().getBounds());
+    }
+
+    @Test
+    public void testBoundsMissingGeometry() {
+        hit.setSource(ImmutableMap.of("name", "test"));
+        assertTrue(createFeature().getBounds().isEmpty());
+    }
+
+    @Test
+    public void testSetAttribute() {
+        SimpleFeature feature = createFeature();
+        feature.setAttribute("name", "other");
+        assertEquals("other", feature.getAttribute("name"));
+        feature.setDefaultGeometry(null);
+        assertNull(feature.getDefaultGeometry());
+        assertTrue(feature.getBounds().isEmpty());
+        assertEquals("test", createFeature().getAttribute("name"));
+    }
+
+    @Test
+    public void testConcurrentDecode() {
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ElasticHit hit = new ElasticHit();
+            hit.setId(String.valueOf(i));
+            hit.setSource(ImmutableMap.of("geo", "POINT (" + i + " " + i % 90 + ")"));
+            features.add(new ElasticSimpleFeature(featureType, "test." + i, hit, null, null,
+                    ElasticDecodePlan.get(featureType), parserUtil, ArrayEncoding.JSON));
+        }
+        features.parallelStream().forEach(SimpleFeature::getDefaultGeometry);
+        for (int i = 0; i < features.size(); i++) {
+            Point point = (Point) features.get(i).getDefaultGeometry();
+            assertEquals(i, point.getX(), 0);
+            assertEquals(i % 90, point.getY(), 0);
+        }
+    }
+
+}
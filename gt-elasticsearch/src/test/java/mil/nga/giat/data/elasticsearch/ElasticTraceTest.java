@@ -0,0 +1,94 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import mil.nga.giat.data.elasticsearch.ElasticTrace.Phase;
+
+public class ElasticTraceTest {
+
+    @Test
+    public void testDisabled() {
+        assertNull(ElasticTrace.start("active", 0));
+    }
+
+    @Test
+    public void testSlowQueryLog() {
+        final List<LogRecord> records = new ArrayList<>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logging.getLogger(ElasticTrace.class);
+        logger.addHandler(handler);
+        try {
+            ElasticTrace trace = ElasticTrace.start("active", 1);
+            trace.add(Phase.HTTP, 5000000);
+            trace.setRequestBody("{\"size\":10}".getBytes());
+            trace.setHits(10);
+            Thread.sleep(5);
+            trace.finish();
+            trace.finish();
+            assertEquals(1, records.size());
+            String message = records.get(0).getMessage();
+            assertTrue(message.contains("layer=active"));
+            assertTrue(message.contains("http=5ms"));
+            assertTrue(message.contains("hits=10"));
+            assertTrue(message.contains("request={\"size\":10}"));
+        } catch (InterruptedException e) {
+            fail();
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTracingFeatureReader() throws IOException {
+        ElasticTrace trace = ElasticTrace.start("active", 60000);
+        FeatureReader<SimpleFeatureType, SimpleFeature> delegate = mock(FeatureReader.class);
+        when(delegate.hasNext()).thenReturn(true, true, false);
+        when(delegate.next()).thenReturn(mock(SimpleFeature.class));
+        ElasticTracingFeatureReader decoder = new ElasticTracingFeatureReader(delegate, trace, null, false);
+        ElasticTracingFeatureReader reader = new ElasticTracingFeatureReader(decoder, trace, decoder, true);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        reader.close();
+        assertEquals(2, count);
+        verify(delegate, times(2)).close();
+        assertTrue(trace.get(Phase.DECODE) > 0);
+        assertTrue(trace.get(Phase.POST_FILTER) >= 0);
+    }
+
+}
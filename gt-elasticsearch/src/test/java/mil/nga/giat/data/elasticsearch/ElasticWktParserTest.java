@@ -0,0 +1,80 @@
+/**
+ * This file is hereby placed into the Public Domain. This means anyone is
+ * free to do whatever they wish with this file.
+ */
+package mil.nga.giat.data.elasticsearch;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+public class ElasticWktParserTest {
+
+    private ElasticWktParser parser;
+
+    private WKTReader reader;
+
+    @Before
+    public void setup() {
+        GeometryFactory geometryFactory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        parser = new ElasticWktParser(geometryFactory);
+        reader = new WKTReader(geometryFactory);
+    }
+
+    private void assertRead(String wkt) throws ParseException {
+        Geometry geometry = parser.read(wkt);
+        assertNotNull(wkt, geometry);
+        assertTrue(wkt, geometry.equalsExact(reader.read(wkt)));
+    }
+
+    @Test
+    public void testRead() throws ParseException {
+        assertRead("POINT (1.5 -2)");
+        assertRead("POINT(1e2 2E-3)");
+        assertRead("LINESTRING (0 0, 1 1, 2 0)");
+        assertRead("POLYGON ((0 0, 1 0, 1 1, 0 0), (0.1 0.1, 0.2 0.1, 0.2 0.2, 0.1 0.1))");
+        assertRead("MULTIPOINT ((0 0), (1 1))");
+        assertRead("MULTIPOINT (0 0, 1 1)");
+        assertRead("MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))");
+        assertRead("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((2 2, 3 2, 3 3, 2 2)))");
+        assertRead("GEOMETRYCOLLECTION (POINT (0 0), LINESTRING (0 0, 1 1))");
+        assertRead("  LINESTRING(0 0,1 1)  ");
+    }
+
+    @Test
+    public void testPackedCoordinates() {
+        Geometry geometry = parser.read("LINESTRING (0 0, 1 1, 2 0)");
+        assertTrue(((LineString) geometry).getCoordinateSequence()
+                instanceof PackedCoordinateSequence.Double);
+    }
+
+    @Test
+    public void testFallback() throws ParseException {
+        assertRead("POINT EMPTY");
+        assertRead("LINESTRING (0 0 1, 1 1 2)");
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(parser.read("POINT (1)"));
+        assertNull(parser.read("POINT (1 2"));
+        assertNull(parser.read("LINESTRING (0 0, 1 1) extra"));
+    }
+
+    @Test
+    public void testIsWkt() {
+        assertTrue(ElasticWktParser.isWkt("POINT (1 2)"));
+        assertTrue(ElasticWktParser.isWkt("GEOMETRYCOLLECTION (POINT (1 2))"));
+        assertFalse(ElasticWktParser.isWkt("40.5,-70.25"));
+        assertFalse(ElasticWktParser.isWkt("BBOX (0, 1, 1, 0)"));
+    }
+
+}
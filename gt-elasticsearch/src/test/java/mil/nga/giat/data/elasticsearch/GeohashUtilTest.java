@@ -4,6 +4,8 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import static org.geotools.geometry.jts.ReferencedEnvelope.EVERYTHING;
 import org.junit.Test;
 
+import com.github.davidmoten.geo.GeoHash;
+import com.github.davidmoten.geo.LatLong;
 import com.google.common.collect.ImmutableMap;
 
 import static org.junit.Assert.*;
@@ -40,4 +42,18 @@ public class GeohashUtilTest {
         assertEquals(expected, aggregations);
     }
 
+    @Test
+    public void testDecode() {
+        double[] coordinates = new double[2];
+        for (String hash : new String[] { "s", "9q8", "u4pruydqqvj", "u4pruydqqvj8", "dr5regw3pp7r6", "zzzzzz", "000000" }) {
+            assertTrue(hash, GeohashUtil.decode(hash, coordinates));
+            LatLong expected = GeoHash.decodeHash(hash);
+            assertEquals(hash, expected.getLon(), coordinates[0], 1e-9);
+            assertEquals(hash, expected.getLat(), coordinates[1], 1e-9);
+        }
+        assertFalse(GeohashUtil.decode("", coordinates));
+        assertFalse(GeohashUtil.decode("u4pa", coordinates));
+        assertFalse(GeohashUtil.decode("U4P", coordinates));
+    }
+
 }
@@ -12,6 +12,7 @@ import org.mockito.ArgumentMatcher;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -19,16 +20,31 @@ import com.google.common.collect.ImmutableSet;
 import static org.mockito.Mockito.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.StatusLine;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 
 public class RestElasticClientTest {
@@ -92,6 +108,46 @@ public class RestElasticClientTest {
         assertEquals(expected, client.getMapping("status_s", "active"));
     }
 
+    @Test
+    public void testGetMappingCached() throws IOException {
+        byte[] data = "{\"status_s\": {\"mappings\": {\"active\": {\"properties\": {\"status_s\": {\"type\": \"keyword\"}}}}}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data), new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest("GET", "/status_s/_mapping/active")).thenReturn(mockResponse);
+
+        Map<String, Map<String, String>> expected = ImmutableMap.of("status_s", ImmutableMap.of("type","keyword"));
+        assertEquals(expected, client.getMapping("status_s", "active"));
+        assertEquals(expected, client.getMapping("status_s", "active"));
+        verify(mockRestClient, times(1)).performRequest("GET", "/status_s/_mapping/active");
+        assertEquals(1, client.getMetadataCache().getHitCount());
+
+        client.getMetadataCache().invalidate("status_s");
+        assertEquals(expected, client.getMapping("status_s", "active"));
+        verify(mockRestClient, times(2)).performRequest("GET", "/status_s/_mapping/active");
+    }
+
+    @Test
+    public void testGetMappingAsyncCached() throws Exception {
+        byte[] data = "{\"status_s\": {\"mappings\": {\"active\": {\"properties\": {\"status_s\": {\"type\": \"keyword\"}}}}}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest("GET", "/status_s/_mapping/active")).thenReturn(mockResponse);
+
+        Map<String, Map<String, String>> expected = ImmutableMap.of("status_s", ImmutableMap.of("type","keyword"));
+        assertEquals(expected, client.getMapping("status_s", "active"));
+        assertEquals(expected, client.getMappingAsync("status_s", "active").get());
+        verify(mockRestClient, never()).performRequestAsync(anyString(), anyString(), anyMap(), any(), any(ResponseListener.class));
+    }
+
+    @Test
+    public void testGetVersionCached() throws IOException {
+        byte[] data = "{\"version\": {\"number\": \"6.4.2\"}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest(eq("GET"), eq("/"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        assertEquals(6.4, client.getVersion(), 1e-9);
+        assertEquals(6.4, client.getVersion(), 1e-9);
+        verify(mockRestClient, times(1)).performRequest(eq("GET"), eq("/"), anyMap(), any(HttpEntity.class));
+    }
+
     @Test
     public void testSearchSize() throws IOException {
         ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"size\":10}".getBytes());
@@ -122,6 +178,17 @@ public class RestElasticClientTest {
         client.search("status_s", "active", request);
     }
 
+    @Test
+    public void testSearchSlice() throws IOException {
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"slice\":{\"id\":1,\"max\":4}}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search?scroll=10s"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.setScroll(10);
+        request.setSlice(1, 4);
+        client.search("status_s", "active", request);
+    }
+
     @Test
     public void testSearchSourceFiltering() throws IOException {
         ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"_source\":\"obj1\"}".getBytes());
@@ -143,6 +210,156 @@ public class RestElasticClientTest {
         client.search("status_s", "active", request);
     }
 
+    @Test
+    public void testSearchDocValueFields() throws IOException {
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher(
+                "{\"_source\":false,\"docvalue_fields\":[\"obj1\",\"obj2\"]}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.addDocValueField("obj1", null);
+        request.addDocValueField("obj2", "epoch_millis");
+        client.search("status_s", "active", request);
+    }
+
+    @Test
+    public void testSearchDocValueFieldsFormat() throws IOException {
+        final Response mockResponse2 = mock(Response.class);
+        final HttpEntity mockEntity2 = mock(HttpEntity.class);
+        when(mockResponse2.getEntity()).thenReturn(mockEntity2);
+        when(mockResponse2.getStatusLine()).thenReturn(mockStatusLine);
+        when(mockEntity2.getContent()).thenReturn(new ByteArrayInputStream("{\"version\": {\"number\": \"6.4.2\"}}".getBytes()));
+        when(mockRestClient.performRequest(eq("GET"), eq("/"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse2);
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher(("{\"_source\":\"obj3\",\"docvalue_fields\":"
+                + "[\"obj1\",{\"field\":\"obj2\",\"format\":\"epoch_millis\"}]}").getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.addDocValueField("obj1", null);
+        request.addDocValueField("obj2", "epoch_millis");
+        request.addSourceInclude("obj3");
+        client.search("status_s", "active", request);
+    }
+
+    @Test
+    public void testSearchFilterPath() throws IOException {
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream("{\"hits\": {\"total\": 0}}".getBytes()));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search?filter_path=_scroll_id,hits.total,"
+                + "hits.max_score,hits.hits._id,hits.hits._source,hits.hits.fields,hits.hits.sort,aggregations,error,status,"
+                + "hits.hits._index,hits.hits._score"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.setHitMetadata(ImmutableSet.of("_score", "_index"));
+        ElasticResponse response = client.search("status_s", "active", request);
+        assertEquals(0, response.getNumHits());
+        assertTrue(response.getHits().isEmpty());
+    }
+
+    @Test
+    public void testSearchFilterPathScroll() throws IOException {
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search?scroll=10s&filter_path=_scroll_id,"
+                + "hits.total,hits.max_score,hits.hits._id,hits.hits._source,hits.hits.fields,hits.hits.sort,aggregations,"
+                + "error,status"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.setScroll(10);
+        request.setHitMetadata(ImmutableSet.of());
+        assertNotNull(client.search("status_s", "active", request));
+    }
+
+    @Test
+    public void testCount() throws IOException {
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream("{\"count\": 5}".getBytes()));
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"query\":{\"match_all\":{}}}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_count"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.setQuery(ImmutableMap.of("match_all", Collections.EMPTY_MAP));
+        assertEquals(5, client.count("status_s", "active", request));
+    }
+
+    @Test
+    public void testSearchTrackTotalHits() throws IOException {
+        final Response mockResponse2 = mock(Response.class);
+        final HttpEntity mockEntity2 = mock(HttpEntity.class);
+        when(mockResponse2.getEntity()).thenReturn(mockEntity2);
+        when(mockResponse2.getStatusLine()).thenReturn(mockStatusLine);
+        byte[] data = "{\"version\": {\"number\": \"6.4.2\"}}".getBytes();
+        when(mockEntity2.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest(eq("GET"), eq("/"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse2);
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"track_total_hits\":false}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        ElasticRequest request = new ElasticRequest();
+        request.setTrackTotalHits(false);
+        assertNotNull(client.search("status_s", "active", request));
+    }
+
+    @Test
+    public void testSearchTotalObject() throws IOException {
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(
+                "{\"hits\": {\"total\": {\"value\": 10, \"relation\": \"eq\"}, \"hits\": []}}".getBytes()));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        ElasticResponse response = client.search("status_s", "active", new ElasticRequest());
+        assertEquals(10, response.getTotalNumHits());
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        byte[] data = "{\"hits\": {\"total\": 0, \"hits\": []}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        ElasticMetrics metrics = new ElasticMetrics();
+        client.setMetrics(metrics);
+        client.search("status_s", "active", new ElasticRequest());
+        assertEquals(1, metrics.getRequestCount());
+        assertEquals(0, metrics.getRequestErrorCount());
+        assertEquals(data.length, metrics.getResponseBytes());
+        assertTrue(metrics.getParseTimeMean() >= 0);
+    }
+
+    @Test
+    public void testSearchTrace() throws IOException {
+        byte[] data = "{\"hits\": {\"total\": 1, \"hits\": [{\"_id\": \"1\"}]}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+
+        ElasticTrace trace = ElasticTrace.start("active", 60000);
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        request.setTrace(trace);
+        client.search("status_s", "active", request);
+        assertEquals(1, trace.getHits());
+        assertEquals("{\"size\":10}", trace.getRequestBody());
+        assertTrue(trace.get(ElasticTrace.Phase.SERIALIZE) > 0);
+        assertTrue(trace.get(ElasticTrace.Phase.HTTP) > 0);
+        assertTrue(trace.get(ElasticTrace.Phase.PARSE) > 0);
+    }
+
+    @Test
+    public void testCoalescedSearchTrace() throws IOException {
+        byte[] data = "{\"hits\": {\"total\": 1, \"hits\": [{\"_id\": \"1\"}]}}".getBytes();
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        client.setSearchCoalescingEnabled(true);
+        ElasticTrace trace = ElasticTrace.start("active", 60000);
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        request.setTrace(trace);
+        client.search("status_s", "active", request);
+        assertEquals(1, trace.getHits());
+        assertEquals("{\"size\":10}", trace.getRequestBody());
+        assertTrue(trace.get(ElasticTrace.Phase.SERIALIZE) > 0);
+        assertTrue(trace.get(ElasticTrace.Phase.HTTP) >= 0);
+        assertTrue(trace.get(ElasticTrace.Phase.PARSE) > 0);
+    }
+
     @Test
     public void testSearchStoredFields() throws IOException {
         final Response mockResponse2 = mock(Response.class);
@@ -190,6 +407,410 @@ public class RestElasticClientTest {
         client.search("status_s", "active", new ElasticRequest());
     }
 
+    @Test
+    public void testSearchStream() throws IOException {
+        InputStream inputStream = new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"max_score\": 0.8, \"hits\": [{\"_index\": \"index_name\"}, {}]}}".getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class))).thenReturn(mockResponse);
+        try (ElasticResponseStream stream = client.searchStream("status_s", "active", new ElasticRequest())) {
+            assertEquals(10, stream.getTotalNumHits());
+            assertEquals("index_name", stream.next().getIndex());
+            assertTrue(stream.hasNext());
+            stream.next();
+            assertFalse(stream.hasNext());
+        }
+    }
+
+    @Test
+    public void testSearchAsync() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"hits\": [{\"_id\": \"1\"}]}}".getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"size\":10}".getBytes());
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher), any(ResponseListener.class));
+
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        ElasticResponse response = client.searchAsync("status_s", "active", request).get();
+        assertEquals(10, response.getTotalNumHits());
+        assertEquals("1", response.getHits().get(0).getId());
+    }
+
+    @Test
+    public void testSearchAsyncFailure() throws Exception {
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onFailure(new IOException("test"));
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        try {
+            client.searchAsync("status_s", "active", new ElasticRequest()).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testSearchAsyncBadStatus() throws Exception {
+        when(mockStatusLine.getStatusCode()).thenReturn(500);
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        try {
+            client.searchAsync("status_s", "active", new ElasticRequest()).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testGetMappingAsync() throws Exception {
+        byte[] data = "{\"status_s\": {\"mappings\": {\"active\": {\"properties\": {\"status_s\": {\"type\": \"keyword\"}}}}}}".getBytes();
+        InputStream inputStream = new ByteArrayInputStream(data);
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("GET"), eq("/status_s/_mapping/active"), anyMap(), isNull(), any(ResponseListener.class));
+
+        Map<String, Map<String, String>> expected = ImmutableMap.of("status_s", ImmutableMap.of("type","keyword"));
+        assertEquals(expected, client.getMappingAsync("status_s", "active").get());
+    }
+
+    @Test
+    public void testMultiSearch() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream(("{\"responses\": [{\"hits\": {\"total\": 10, \"hits\": [{\"_id\": \"1\"}]}},"
+                + "{\"error\": {\"type\": \"index_not_found_exception\"}, \"status\": 404}]}").getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        final List<String> lines = new ArrayList<>();
+        doAnswer(invocation -> {
+            HttpEntity entity = invocation.getArgument(3);
+            lines.addAll(Arrays.asList(new String(EntityUtils.toByteArray(entity)).split("\n")));
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/_msearch"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        client.setSearchBatchWindow(100);
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        CompletableFuture<ElasticResponse> first = client.searchAsync("status_s", "active", request);
+        CompletableFuture<ElasticResponse> second = client.searchAsync("other", "active", new ElasticRequest());
+
+        assertEquals("1", first.get().getHits().get(0).getId());
+        try {
+            second.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(4, lines.size());
+        assertEquals(ImmutableMap.of("index", "status_s", "type", "active"), mapper.readValue(lines.get(0), Map.class));
+        assertEquals(ImmutableMap.of("size", 10), mapper.readValue(lines.get(1), Map.class));
+        assertEquals(ImmutableMap.of("index", "other", "type", "active"), mapper.readValue(lines.get(2), Map.class));
+    }
+
+    @Test
+    public void testSearchSmile() throws IOException {
+        final Map<String,Object> source = ImmutableMap.of("geom", ImmutableList.of(1.5, 2.5));
+        final Map<String,Object> body = ImmutableMap.of("hits", ImmutableMap.of("total", 1,
+                "hits", ImmutableList.of(ImmutableMap.of("_id", "1", "_source", source))));
+        final byte[] data = new ObjectMapper(new SmileFactory()).writeValueAsBytes(body);
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data));
+        when(mockEntity.getContentType()).thenReturn(new BasicHeader("Content-Type", "application/smile"));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class),
+                argThat((Header header) -> header.getName().equals("Accept") && header.getValue().equals("application/smile"))))
+                .thenReturn(mockResponse);
+
+        client.setSmileEnabled(true);
+        ElasticResponse response = client.search("status_s", "active", new ElasticRequest());
+        assertEquals(1, response.getTotalNumHits());
+        assertEquals("1", response.getHits().get(0).getId());
+        assertEquals(source, response.getHits().get(0).getSource());
+    }
+
+    @Test
+    public void testSearchSmileJsonResponse() throws IOException {
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream("{\"hits\": {\"total\": 1, \"hits\": [{\"_id\": \"1\"}]}}".getBytes()));
+        when(mockEntity.getContentType()).thenReturn(new BasicHeader("Content-Type", "application/json; charset=UTF-8"));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class),
+                any(Header.class))).thenReturn(mockResponse);
+
+        client.setSmileEnabled(true);
+        ElasticResponse response = client.search("status_s", "active", new ElasticRequest());
+        assertEquals("1", response.getHits().get(0).getId());
+    }
+
+    @Test
+    public void testCompressedResponse() throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(data)) {
+            outputStream.write("{\"hits\": {\"total\": 1, \"hits\": [{\"_id\": \"1\"}]}}".getBytes());
+        }
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(data.toByteArray()));
+        when(mockEntity.getContentEncoding()).thenReturn(new BasicHeader("Content-Encoding", "gzip"));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class),
+                argThat((Header header) -> header.getName().equals("Accept-Encoding") && header.getValue().equals("gzip"))))
+                .thenReturn(mockResponse);
+
+        client.setCompressionEnabled(true);
+        ElasticResponse response = client.search("status_s", "active", new ElasticRequest());
+        assertEquals("1", response.getHits().get(0).getId());
+    }
+
+    @Test
+    public void testCompressedRequest() throws IOException {
+        final List<HttpEntity> entities = new ArrayList<>();
+        when(mockEntity.getContent()).thenAnswer(invocation -> new ByteArrayInputStream("{}".getBytes()));
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class)))
+                .thenAnswer(invocation -> {
+                    entities.add(invocation.getArgument(3));
+                    return mockResponse;
+                });
+
+        client.setRequestCompressionThreshold(100);
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        client.search("status_s", "active", request);
+        assertNull(entities.get(0).getContentEncoding());
+
+        final List<List<Double>> coordinates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            coordinates.add(ImmutableList.of((double) i, (double) i));
+        }
+        request.setQuery(ImmutableMap.of("geo_shape", ImmutableMap.of("geom", ImmutableMap.of("shape",
+                ImmutableMap.of("type", "linestring", "coordinates", coordinates)))));
+        client.search("status_s", "active", request);
+        final HttpEntity entity = entities.get(1);
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        try (InputStream inputStream = new GZIPInputStream(entity.getContent())) {
+            Map<String,Object> body = new ObjectMapper().readValue(inputStream, new TypeReference<Map<String,Object>>() {});
+            assertEquals(10, body.get("size"));
+            assertTrue(body.containsKey("query"));
+        }
+    }
+
+    @Test
+    public void testSearchCoalescing() throws Exception {
+        when(mockEntity.getContent()).thenAnswer(invocation -> new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"hits\": [{\"_id\": \"1\"}]}}".getBytes()));
+        final List<ResponseListener> listeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            listeners.add(invocation.getArgument(4));
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        client.setSearchCoalescingEnabled(true);
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        request.setQuery(ImmutableMap.of("term", ImmutableMap.of("status_s", "active")));
+        CompletableFuture<ElasticResponse> first = client.searchAsync("status_s", "active", request);
+        CompletableFuture<ElasticResponse> second = client.searchAsync("status_s", "active", new ElasticRequest(request));
+        ElasticRequest other = new ElasticRequest(request);
+        other.setSize(20);
+        CompletableFuture<ElasticResponse> third = client.searchAsync("status_s", "active", other);
+        assertEquals(2, listeners.size());
+        assertEquals(2, client.getInFlightSearchCount());
+
+        listeners.forEach(listener -> listener.onSuccess(mockResponse));
+        assertSame(first.get(), second.get());
+        assertNotSame(first.get(), third.get());
+        assertEquals(3, client.getCoalescableSearchCount());
+        assertEquals(1, client.getCoalescedSearchCount());
+        assertEquals(0, client.getInFlightSearchCount());
+
+        client.searchAsync("status_s", "active", request);
+        assertEquals(3, listeners.size());
+    }
+
+    @Test
+    public void testSearchCoalescingFailure() throws Exception {
+        final List<ResponseListener> listeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            listeners.add(invocation.getArgument(4));
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        client.setSearchCoalescingEnabled(true);
+        CompletableFuture<ElasticResponse> first = client.searchAsync("status_s", "active", new ElasticRequest());
+        CompletableFuture<ElasticResponse> second = client.searchAsync("status_s", "active", new ElasticRequest());
+        listeners.get(0).onFailure(new IOException("test"));
+        for (CompletableFuture<ElasticResponse> future : ImmutableList.of(first, second)) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void testRetryRejected() throws IOException {
+        ResponseException rejected = createResponseException(429);
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"size\":10}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher)))
+                .thenThrow(rejected).thenThrow(rejected).thenReturn(mockResponse);
+
+        client.setBackoff(new ElasticBackoff(2, 1, 1));
+        ElasticRequest request = new ElasticRequest();
+        request.setSize(10);
+        client.search("status_s", "active", request);
+        verify(mockRestClient, times(3)).performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), argThat(matcher));
+    }
+
+    @Test
+    public void testRetryRejectedExhausted() throws IOException {
+        ResponseException rejected = createResponseException(429);
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class)))
+                .thenThrow(rejected);
+
+        client.setBackoff(new ElasticBackoff(1, 1, 1));
+        try {
+            client.search("status_s", "active", new ElasticRequest());
+            fail();
+        } catch (ResponseException e) {
+            assertSame(rejected, e);
+        }
+        verify(mockRestClient, times(2)).performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class));
+    }
+
+    @Test
+    public void testNoRetryOtherErrors() throws IOException {
+        ResponseException error = createResponseException(400);
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class)))
+                .thenThrow(error);
+
+        client.setBackoff(new ElasticBackoff(3, 1, 1));
+        try {
+            client.search("status_s", "active", new ElasticRequest());
+            fail();
+        } catch (ResponseException e) {
+            assertSame(error, e);
+        }
+        verify(mockRestClient, times(1)).performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class));
+    }
+
+    @Test
+    public void testRetryRejectedAsync() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"hits\": [{\"_id\": \"1\"}]}}".getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        ResponseException rejected = createResponseException(429);
+        final List<Integer> attempts = new ArrayList<>();
+        doAnswer(invocation -> {
+            ResponseListener listener = invocation.getArgument(4);
+            attempts.add(attempts.size());
+            if (attempts.size() == 1) {
+                listener.onFailure(rejected);
+            } else {
+                listener.onSuccess(mockResponse);
+            }
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        client.setBackoff(new ElasticBackoff(2, 1, 1));
+        ElasticResponse response = client.searchAsync("status_s", "active", new ElasticRequest()).get();
+        assertEquals(10, response.getTotalNumHits());
+        assertEquals(2, attempts.size());
+    }
+
+    @Test
+    public void testConcurrencyLimiter() throws Exception {
+        ResponseException rejected = createResponseException(429);
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class)))
+                .thenThrow(rejected).thenReturn(mockResponse);
+
+        ElasticConcurrencyLimiter limiter = new ElasticConcurrencyLimiter(10, 1000, 10);
+        client.setConcurrencyLimiter(limiter);
+        client.setBackoff(new ElasticBackoff(1, 1, 1));
+        client.search("status_s", "active", new ElasticRequest());
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testHedgedSearch() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"hits\": [{\"_id\": \"1\"}]}}".getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        final List<ResponseListener> listeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            ResponseListener listener = invocation.getArgument(4);
+            synchronized (listeners) {
+                listeners.add(listener);
+                if (listeners.size() == 2) {
+                    // only the hedged request answers
+                    listener.onSuccess(mockResponse);
+                }
+            }
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(50, 1);
+        for (int i = 0; i < 20; i++) {
+            policy.record(1);
+        }
+        client.setHedgePolicy(policy);
+        ElasticResponse response = client.searchAsync("status_s", "active", new ElasticRequest()).get(5, TimeUnit.SECONDS);
+        assertEquals(10, response.getTotalNumHits());
+        assertEquals(2, listeners.size());
+        assertEquals(1, policy.getHedgedCount());
+        assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void testNoHedgeWithoutSamples() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream("{\"hits\": {\"total\": 10, \"hits\": []}}".getBytes());
+        when(mockEntity.getContent()).thenReturn(inputStream);
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/status_s/active/_search"), anyMap(), any(HttpEntity.class), any(ResponseListener.class));
+
+        ElasticHedgePolicy policy = new ElasticHedgePolicy(50, 1);
+        client.setHedgePolicy(policy);
+        client.searchAsync("status_s", "active", new ElasticRequest()).get();
+        assertEquals(0, policy.getHedgedCount());
+    }
+
+    private ResponseException createResponseException(int statusCode) {
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(statusCode);
+        Response response = mock(Response.class);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        ResponseException exception = mock(ResponseException.class);
+        when(exception.getResponse()).thenReturn(response);
+        return exception;
+    }
+
+    @Test
+    public void testMultiSearchSkipsScroll() throws IOException {
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{}".getBytes());
+        when(mockRestClient.performRequest(eq("POST"), eq("/status_s/active/_search?scroll=10s"), anyMap(), argThat(matcher))).thenReturn(mockResponse);
+
+        client.setSearchBatchWindow(100);
+        ElasticRequest request = new ElasticRequest();
+        request.setScroll(10);
+        client.search("status_s", "active", request);
+        verify(mockRestClient, never()).performRequestAsync(anyString(), anyString(), anyMap(), any(), any(ResponseListener.class));
+    }
+
+    @Test
+    public void testNextScrollAsync() throws Exception {
+        ArgumentMatcher<ByteArrayEntity> matcher = new JsonByteArrayEntityMatcher("{\"scroll_id\":\"id1\",\"scroll\":\"10s\"}".getBytes());
+        doAnswer(invocation -> {
+            ((ResponseListener) invocation.getArgument(4)).onSuccess(mockResponse);
+            return null;
+        }).when(mockRestClient).performRequestAsync(eq("POST"), eq("/_search/scroll"), anyMap(), argThat(matcher), any(ResponseListener.class));
+
+        assertNotNull(client.scrollAsync("id1", 10).get());
+    }
+
     @Test
     public void testQuery() throws IOException {
         final Map<String,Object> query = ImmutableMap.of("term", ImmutableMap.of("obj1", "value1"));